@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mtreader.api.Measurement;
+import com.mtreader.api.impl.Corpus;
+
+/**
+ * Writes and reads a timestamp and a value column, with the VC840 corpus as values, sampled every 100 ms.
+ *
+ * @author Felix Kirchmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnarFileBenchmark
+{
+	private static final WritableByteChannel	discard	= new WritableByteChannel()
+														{
+															@Override
+															public boolean isOpen()
+															{
+																return true;
+															}
+															
+															@Override
+															public void close()
+															{}
+															
+															@Override
+															public int write(final ByteBuffer src)
+															{
+																final int written = src.remaining();
+																src.position(src.limit());
+																return written;
+															}
+														};
+	
+	@Param({ "1000000" })
+	private int									rows;
+	
+	private Measurement[]						measurements;
+	private Path								file;
+	
+	@Setup
+	public void setup() throws IOException
+	{
+		measurements = Corpus.loadVC840Measurements();
+		file = Files.createTempFile("benchmark", "." + ColumnarFile.extension);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+		{
+			write(channel);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		Files.delete(file);
+	}
+	
+	private void write(final WritableByteChannel out) throws IOException
+	{
+		final ColumnarFile.Writer writer = new ColumnarFile.Writer(out, ColumnarFile.defaultMetadata(),
+				ColumnarFile.Column.timestamps("Time"), ColumnarFile.Column.decimals("Value", "VC840",
+						SI.Prefix.none));
+		long time = 1700000000000000000L;
+		for (int i = 0; i < rows; i++)
+		{
+			final Measurement measurement = measurements[i % measurements.length];
+			writer.setTimestamp(0, time += 100000000L);
+			writer.setValue(1, measurement.getMantissa(), measurement.getScale() - measurement.getPrefix().exponent,
+					measurement.getUnitType());
+			writer.endRow();
+		}
+		writer.finish();
+	}
+	
+	@Benchmark
+	public void write() throws IOException
+	{
+		write(discard);
+	}
+	
+	@Benchmark
+	public ColumnarFile read() throws IOException
+	{
+		return ColumnarFile.read(file);
+	}
+}
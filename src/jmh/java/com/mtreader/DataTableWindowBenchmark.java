@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mtreader.DataTableWindow.DataPoint;
+import com.mtreader.api.Measurement;
+import com.mtreader.api.impl.Corpus;
+
+/**
+ * 
+ * @author Felix Kirchmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataTableWindowBenchmark
+{
+	private static final WritableByteChannel	discard	= new WritableByteChannel()
+														{
+															@Override
+															public boolean isOpen()
+															{
+																return true;
+															}
+															
+															@Override
+															public void close()
+															{}
+															
+															@Override
+															public int write(final ByteBuffer src)
+															{
+																final int written = src.remaining();
+																src.position(src.limit());
+																return written;
+															}
+														};
+	
+	private DataPoint[]							points;
+	private int									index;
+	
+	@Setup
+	public void setup()
+	{
+		final Measurement[] measurements = Corpus.loadVC840Measurements();
+		points = new DataPoint[measurements.length];
+		for (int i = 0; i < measurements.length; i++)
+		{
+			points[i] = new DataPoint(BigDecimal.valueOf(i + 1), measurements[i].getData());
+		}
+	}
+	
+	/**
+	 * A datalog like the one of the {@link DataTableWindow}, with the row number as X and the corpus as Y.
+	 */
+	@State(Scope.Thread)
+	public static class Datalog
+	{
+		@Param({ "1000", "100000" })
+		private int				rows;
+		
+		private DatalogStore	store;
+		private DatalogList		list;
+		
+		@Setup
+		public void setup() throws IOException
+		{
+			final Measurement[] measurements = Corpus.loadVC840Measurements();
+			store = new DatalogStore(Constants.datalogResidentPages);
+			list = new DatalogList(store);
+			for (int i = 0; i < rows; i++)
+			{
+				final Measurement measurement = measurements[i % measurements.length];
+				store.append(i + 1, 0, measurement.getMantissa(), measurement.getScale());
+			}
+			list.add(0, rows, null);
+		}
+		
+		@TearDown
+		public void tearDown()
+		{
+			store.close();
+		}
+	}
+	
+	@Benchmark
+	public int rowComparator()
+	{
+		final int next = (index + 1 == points.length) ? 0 : index + 1;
+		final int result = DataPoint.byY.compare(points[index], points[next]);
+		index = next;
+		return result;
+	}
+	
+	@Benchmark
+	public int csvExport(final Datalog datalog) throws IOException
+	{
+		final DatalogExport export = new CSVExport(datalog.store, datalog.list.copyRows(), "X in #", "Y in V",
+				new File("benchmark.csv"), false)
+		{
+			// The progress is shown on the FX thread, which doesn't run here
+			@Override
+			protected void updateMessage(final String message)
+			{}
+			
+			@Override
+			protected void updateProgress(final long workDone, final long max)
+			{}
+		};
+		return export.write(discard);
+	}
+}
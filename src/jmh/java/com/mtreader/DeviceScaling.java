@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+import com.mtreader.api.PollScheduler;
+import com.mtreader.api.impl.Corpus;
+
+/**
+ * Measures the threads and memory used by 1, 16 and 128 simulated devices, with platform and with virtual threads.
+ * Half of the devices are VC-840s sending a frame every 60 ms, the other half are ME-32s polled every 300 ms in one
+ * poll group. Each configuration runs in a JVM of its own. Run with:
+ * 
+ * <pre>
+ * mvn -Pbenchmarks compile exec:exec@device-scaling
+ * </pre>
+ * 
+ * @author Felix Kirchmann
+ */
+public class DeviceScaling
+{
+	private static final int[]	deviceCounts	= { 1, 16, 128 };
+	private static final long	runTime			= 5000;				// ms
+																		
+	public static void main(final String[] args) throws Exception
+	{
+		if (args.length == 2 && args[0].equals("run"))
+		{
+			run(Integer.parseInt(args[1]));
+			return;
+		}
+		
+		System.out.println("| Devices | Threads | Live threads | RSS (MB) | Heap used (MB) | Measurements/s | Poll jitter mean / max (\u03bcs) |");
+		System.out.println("|--------:|---------|-------------:|---------:|---------------:|---------------:|------------------------:|");
+		for (final int devices : deviceCounts)
+		{
+			for (final boolean virtual : new boolean[] { false, true })
+			{
+				final String result = fork(devices, virtual);
+				System.out.println("| " + devices + " | " + (virtual ? "virtual" : "platform") + " | " + result + " |");
+			}
+		}
+	}
+	
+	private static String fork(final int devices, final boolean virtual) throws IOException, InterruptedException
+	{
+		final List<String> command = new ArrayList<>(Arrays.asList(
+				Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-Xmx256m",
+				"-Dmtreader.virtualThreads=" + virtual, "-cp", System.getProperty("java.class.path"),
+				DeviceScaling.class.getName(), "run", Integer.toString(devices)));
+		final Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT)
+				.redirectInput(new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null"))
+				.start();
+		String result = null;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+				Constants.charset)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				result = line;
+			}
+		}
+		if (process.waitFor() != 0) { throw new IllegalStateException("Run with " + devices + " devices failed"); }
+		return result;
+	}
+	
+	private static void run(final int devices) throws Exception
+	{
+		DeviceRegistry.loadPlugins();
+		final byte[][] vc840 = Corpus.load(Corpus.VC840);
+		final byte[][] me32 = Corpus.load(Corpus.ME32);
+		for (int i = 0; i < me32.length; i++)
+		{
+			me32[i] = Arrays.copyOf(me32[i], me32[i].length + 1);
+			me32[i][me32[i].length - 1] = 13; // Carriage return
+		}
+		
+		final AtomicLong received = new AtomicLong();
+		final DataReceiver counter = new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				received.incrementAndGet();
+			}
+		};
+		
+		final List<DeviceConnection> connections = new ArrayList<>();
+		for (int i = 0; i < devices; i++)
+		{
+			final DeviceConnection connection;
+			if (i % 2 == 0)
+			{
+				connection = DeviceConnection.getInstance(new SimulatedDataDevice("sim" + i, vc840, 60),
+						"Voltcraft VC-840");
+			}
+			else
+			{
+				connection = DeviceConnection.getInstance(new SimulatedDataDevice("sim" + i, me32, 0),
+						"Voltcraft ME-32");
+			}
+			connection.addReceiver(counter);
+			connections.add(connection);
+		}
+		
+		Thread.sleep(runTime);
+		final long measurements = received.get();
+		System.gc();
+		final int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+		final long heap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+		final long rss = readRSS();
+		final Collection<PollScheduler.Statistics> polls = PollScheduler.getDefault().getStatistics().values();
+		final String jitter = polls.isEmpty() ? "-" : polls.iterator().next().meanJitter + " / "
+				+ polls.iterator().next().maxJitter;
+		
+		for (final DeviceConnection connection : connections)
+		{
+			connection.close();
+		}
+		
+		System.out.println(threads + " | " + (rss / 1024) + " | " + (heap / 1024 / 1024) + " | "
+				+ (measurements * 1000 / runTime) + " | " + jitter);
+	}
+	
+	// in kB, or -1 if not running on Linux
+	private static long readRSS() throws IOException
+	{
+		final File status = new File("/proc/self/status");
+		if (!status.exists()) { return -1; }
+		for (final String line : Files.readAllLines(status.toPath()))
+		{
+			if (line.startsWith("VmRSS:")) { return Long.parseLong(line.replaceAll("[^0-9]", "")); }
+		}
+		return -1;
+	}
+}
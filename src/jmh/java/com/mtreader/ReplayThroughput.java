@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+import com.mtreader.api.impl.Corpus;
+
+/**
+ * Measures the throughput of the whole receive path of a connection (device reads, framing, decoding, history and
+ * compressed series) by replaying a capture of the VC-840 and ME-32 corpora with a {@link ReplayDataDevice}, at
+ * maximum speed and, to check the timing, at 1x and 10x of the original speed. Run with:
+ *
+ * <pre>
+ * mvn -Pbenchmarks compile exec:exec@replay-throughput
+ * </pre>
+ *
+ * @author Felix Kirchmann
+ */
+public class ReplayThroughput
+{
+	private static final long	warmupTime		= 2000;			// ms
+	private static final long	runTime			= 5000;			// ms
+	private static final long	timedRunTime	= 3000;			// ms
+	private static final long	frameInterval	= 60000000L;	// ns, the interval of the VC-840
+	
+	public static void main(final String[] args) throws Exception
+	{
+		DeviceRegistry.loadPlugins();
+		final byte[][] me32 = Corpus.load(Corpus.ME32);
+		for (int i = 0; i < me32.length; i++)
+		{
+			me32[i] = Arrays.copyOf(me32[i], me32[i].length + 1);
+			me32[i][me32[i].length - 1] = 13; // Carriage return
+		}
+		final Path vc840Capture = capture(Corpus.load(Corpus.VC840));
+		final Path me32Capture = capture(me32);
+		try
+		{
+			System.out.println("| Device | Speed | Measurements/s |");
+			System.out.println("|--------|------:|---------------:|");
+			run("Voltcraft VC-840", vc840Capture, ReplayDataDevice.maximumSpeed);
+			run("Voltcraft ME-32", me32Capture, ReplayDataDevice.maximumSpeed);
+			run("Voltcraft VC-840", vc840Capture, 1);
+			run("Voltcraft VC-840", vc840Capture, 10);
+		}
+		finally
+		{
+			Files.delete(vc840Capture);
+			Files.delete(me32Capture);
+		}
+	}
+	
+	// Writes a capture with one frame every frameInterval
+	private static Path capture(final byte[][] frames) throws IOException
+	{
+		final Path file = Files.createTempFile("replay", "." + CaptureFile.extension);
+		Files.delete(file);
+		try (CaptureFile.Writer writer = new CaptureFile.Writer(file, System.currentTimeMillis() * 1000000L))
+		{
+			for (int i = 0; i < frames.length; i++)
+			{
+				writer.write(i * frameInterval, ByteBuffer.wrap(frames[i]), 0, frames[i].length);
+			}
+		}
+		return file;
+	}
+	
+	private static void run(final String deviceType, final Path capture, final double speed) throws Exception
+	{
+		final AtomicLong received = new AtomicLong();
+		final DeviceConnection connection = DeviceConnection.getInstance(new ReplayDataDevice(capture, speed, true),
+				deviceType);
+		connection.addReceiver(new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				received.incrementAndGet();
+			}
+		});
+		
+		final long time;
+		if (speed == ReplayDataDevice.maximumSpeed)
+		{
+			Thread.sleep(warmupTime);
+			time = runTime;
+		}
+		else
+		{
+			time = timedRunTime;
+		}
+		final long before = received.get();
+		Thread.sleep(time);
+		final long measurements = received.get() - before;
+		connection.close();
+		DeviceRegistry.unregisterConnection(connection);
+		
+		System.out.println("| " + deviceType + " | " + (speed == ReplayDataDevice.maximumSpeed ? "max" : speed + "x")
+				+ " | " + (measurements * 1000 / time) + " |");
+	}
+}
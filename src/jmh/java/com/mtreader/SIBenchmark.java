@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mtreader.api.Measurement;
+import com.mtreader.api.impl.Corpus;
+
+/**
+ * 
+ * @author Felix Kirchmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SIBenchmark
+{
+	@Param({ "none", "milli", "kilo" })
+	private SI.Prefix		to;
+	
+	private Measurement[]	measurements;
+	private int				index;
+	
+	@Setup
+	public void setup()
+	{
+		measurements = Corpus.loadVC840Measurements();
+	}
+	
+	private Measurement next()
+	{
+		final Measurement measurement = measurements[index];
+		if (++index == measurements.length)
+		{
+			index = 0;
+		}
+		return measurement;
+	}
+	
+	@Benchmark
+	public BigDecimal convert()
+	{
+		final Measurement measurement = next();
+		return SI.convert(measurement.getData(), measurement.getPrefix(), to);
+	}
+	
+	@Benchmark
+	public Measurement convertMeasurement()
+	{
+		return next().convert(to);
+	}
+}
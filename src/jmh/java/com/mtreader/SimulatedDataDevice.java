@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.mtreader.api.DataDevice;
+
+/**
+ * A device that sends the frames of a corpus, either continuously at a fixed rate like the VC-840, or one frame in
+ * response to each write like the ME-32. Waiting is done by sleeping or blocking on a queue, both of which release
+ * the carrier thread of a virtual thread.
+ * 
+ * @author Felix Kirchmann
+ */
+class SimulatedDataDevice extends DataDevice
+{
+	private final String				name;
+	private final byte[][]				frames;
+	private final long					frameInterval;						// ms, 0 if polled
+	private final BlockingQueue<byte[]>	responses	= new LinkedBlockingQueue<>();
+	private int							next		= 0;
+	private long						nextFrameDue	= System.currentTimeMillis();
+	
+	public SimulatedDataDevice(final String name, final byte[][] frames, final long frameInterval)
+	{
+		this.name = name;
+		this.frames = frames;
+		this.frameInterval = frameInterval;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+	
+	@Override
+	public byte[] read(final int numBytes) throws IOException
+	{
+		final byte[] read = new byte[numBytes];
+		final ByteBuffer buffer = ByteBuffer.wrap(read);
+		while (buffer.hasRemaining())
+		{
+			read(buffer);
+		}
+		return read;
+	}
+	
+	@Override
+	public int read(final ByteBuffer dst) throws IOException
+	{
+		try
+		{
+			final byte[] frame;
+			if (frameInterval == 0)
+			{
+				frame = responses.take();
+			}
+			else
+			{
+				final long wait = nextFrameDue - System.currentTimeMillis();
+				if (wait > 0)
+				{
+					Thread.sleep(wait);
+				}
+				nextFrameDue += frameInterval;
+				frame = nextFrame();
+			}
+			final int length = Math.min(frame.length, dst.remaining());
+			dst.put(frame, 0, length);
+			return length;
+		}
+		catch (final InterruptedException e)
+		{
+			throw new InterruptedIOException();
+		}
+	}
+	
+	@Override
+	public void write(final byte[] bytes) throws IOException
+	{
+		if (frameInterval == 0)
+		{
+			responses.offer(nextFrame());
+		}
+	}
+	
+	private synchronized byte[] nextFrame()
+	{
+		final byte[] frame = frames[next];
+		next = (next + 1) % frames.length;
+		return frame;
+	}
+}
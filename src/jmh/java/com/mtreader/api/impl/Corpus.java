@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mtreader.Constants;
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+
+/**
+ * Loads the recorded frame corpora from <code>src/jmh/resources/corpus</code>. Each line of a corpus file is one
+ * frame, hex-encoded exactly as it was received from the serial port.
+ * 
+ * @author Felix Kirchmann
+ */
+public final class Corpus
+{
+	/** VC-840 frames, 14 bytes each, sequence numbers in the high nibbles. */
+	public static final String	VC840	= "vc840";
+	
+	/** ME-32 packets, 13 bytes each, without the terminating carriage return. */
+	public static final String	ME32	= "me32";
+	
+	private Corpus()
+	{
+	}
+	
+	public static byte[][] load(final String name)
+	{
+		final InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name + ".hex");
+		if (in == null) { throw new IllegalArgumentException("Unknown corpus: " + name); }
+		
+		final List<byte[]> frames = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, Constants.charset)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if (line.isEmpty())
+				{
+					continue;
+				}
+				final byte[] frame = new byte[line.length() / 2];
+				for (int i = 0; i < frame.length; i++)
+				{
+					frame[i] = (byte) Integer.parseInt(line.substring(i * 2, i * 2 + 2), 16);
+				}
+				frames.add(frame);
+			}
+		}
+		catch (final IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return frames.toArray(new byte[0][]);
+	}
+	
+	/**
+	 * Concatenates all frames of a corpus, as if they had been received back to back.
+	 */
+	public static byte[] loadStream(final String name)
+	{
+		final byte[][] frames = load(name);
+		int length = 0;
+		for (final byte[] frame : frames)
+		{
+			length += frame.length;
+		}
+		final byte[] stream = new byte[length];
+		int pos = 0;
+		for (final byte[] frame : frames)
+		{
+			System.arraycopy(frame, 0, stream, pos, frame.length);
+			pos += frame.length;
+		}
+		return stream;
+	}
+	
+	/**
+	 * Strips the sequence numbers from VC-840 frames, the same way the plugin does before decoding.
+	 */
+	public static byte[][] loadVC840Payloads()
+	{
+		final byte[][] frames = load(VC840);
+		for (final byte[] frame : frames)
+		{
+			for (int i = 0; i < frame.length; i++)
+			{
+				frame[i] = (byte) (frame[i] & 0x0F);
+			}
+		}
+		return frames;
+	}
+	
+	/**
+	 * Decodes the VC-840 corpus, returning every valid measurement in it.
+	 */
+	public static Measurement[] loadVC840Measurements()
+	{
+		final List<Measurement> measurements = new ArrayList<>();
+		final VoltcraftVC840 plugin = new VoltcraftVC840();
+		plugin.addReceiver(new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				measurements.add(data);
+			}
+		});
+		for (final byte[] frame : loadVC840Payloads())
+		{
+			plugin.decode(frame, 0);
+		}
+		return measurements.toArray(new Measurement[0]);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+
+import com.mtreader.SI;
+import com.mtreader.api.Measurement;
+
+/**
+ * The original, string-based ME-32 decoder, kept as a baseline for {@link VoltcraftME32Benchmark} and to verify the
+ * results of {@link VoltcraftME32Parser}.
+ * 
+ * @author Felix Kirchmann
+ */
+final class LegacyVoltcraftME32Decoder
+{
+	private static final Charset	packetCharset	= Charset.forName("UTF-8");
+	
+	private LegacyVoltcraftME32Decoder()
+	{
+	}
+	
+	static Measurement decodePacket(final byte[] packetBytes)
+	{
+		// Read the packet as a string
+		final String packet = new String(packetBytes, packetCharset);
+		
+		// Determine the displayed number
+		String numberString = packet.substring(3, 9);
+		numberString = numberString.replace(".L", "").replace("L", "").replace('O', '0').trim();
+		BigDecimal number = null;
+		try
+		{
+			number = new BigDecimal(numberString);
+		}
+		catch (final NumberFormatException e)
+		{
+			return null;
+		}
+		
+		// SI Prefix
+		final String prefixString = packet.substring(9, 10);
+		SI.Prefix prefix = null;
+		if (prefixString.equals(" "))
+		{
+			prefix = SI.Prefix.none;
+		}
+		else
+		{
+			for (final SI.Prefix p : SI.Prefix.values())
+			{
+				if (p.symbol.equals(prefixString))
+				{
+					prefix = p;
+					break;
+				}
+			}
+		}
+		if (prefix == null) { return null; }
+		
+		String unit = packet.substring(10, 13).trim();
+		if (unit.equalsIgnoreCase("ohm"))
+		{
+			unit = "\u03a9"; // Ohm, uppercase Greek Omega
+		}
+		else if (unit.equalsIgnoreCase("c"))
+		{
+			unit = "\u00B0C"; // Degrees Celsius
+		}
+		
+		// Unit
+		return new Measurement(number, unit, prefix);
+	}
+}
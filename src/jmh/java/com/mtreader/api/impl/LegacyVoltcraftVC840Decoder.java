@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.mtreader.SI;
+import com.mtreader.api.Measurement;
+
+/**
+ * The original, string-based VC-840 decoder, kept as a baseline for {@link VoltcraftVC840Benchmark} and to verify
+ * that the table-driven decoder produces exactly the same measurements.
+ * 
+ * @author Felix Kirchmann
+ */
+final class LegacyVoltcraftVC840Decoder
+{
+	private LegacyVoltcraftVC840Decoder()
+	{
+	}
+	
+	static Measurement decode(final byte[] read, final int offset)
+	{
+		// Ensure that only one SI prefix is set
+		if (!isPowerOfTwo((read[offset + 9] & 0b1110) | ((read[offset + 10] & 0b1010) << 3))) { return null; }
+		
+		// Ensure that only one measurement unit is set
+		if (!isPowerOfTwo((read[offset + 11] & 0b1100) | ((read[offset + 12] & 0b1110) << 3))) { return null; }
+		
+		// Decode displayed digits
+		final byte[] chars = new byte[4];
+		for (int i = 0; i < chars.length; i++)
+		{
+			final byte chr = decodeChar(new byte[] { read[offset + (i * 2) + 1], read[offset + (i * 2) + 2] });
+			if (chr == -1) { return null; }
+			chars[i] = chr;
+		}
+		
+		// Find the decimal point
+		int dotPosition = chars.length;
+		for (int i = 1; i <= 3; i++)
+		{
+			if (getBitState(read[offset + (i * 2) + 1], 3))
+			{
+				if (dotPosition == chars.length)
+				{
+					dotPosition = i;
+					break;
+				}
+				else
+				{
+					return null;
+				}
+			}
+		}
+		final boolean negative = getBitState(read[offset + 1], 3);
+		
+		SI.Prefix prefix = SI.Prefix.none;
+		if (getBitState(read[offset + 9], 1))
+		{
+			prefix = SI.Prefix.kilo;
+		}
+		else if (getBitState(read[offset + 9], 2))
+		{
+			prefix = SI.Prefix.nano;
+		}
+		else if (getBitState(read[offset + 9], 3))
+		{
+			prefix = SI.Prefix.micro;
+		}
+		else if (getBitState(read[offset + 10], 1))
+		{
+			prefix = SI.Prefix.mega;
+		}
+		else if (getBitState(read[offset + 10], 3))
+		{
+			prefix = SI.Prefix.milli;
+		}
+		
+		String unit = "";
+		if (getBitState(read[offset + 11], 2))
+		{
+			unit = "\u03a9"; // Ohm, uppercase Greek Omega
+		}
+		else if (getBitState(read[offset + 11], 3))
+		{
+			unit = "F"; // Farad
+		}
+		else if (getBitState(read[offset + 12], 1))
+		{
+			unit = "Hz"; // Hertz
+		}
+		else if (getBitState(read[offset + 12], 2))
+		{
+			unit = "V"; // Volt
+		}
+		else if (getBitState(read[offset + 12], 3))
+		{
+			unit = "A"; // Ampère
+		}
+		else if (getBitState(read[offset + 13], 0)) // For some reason, this pin is undocumented
+		{
+			unit = "\u00B0C"; // Degrees Celsius
+		}
+		
+		// Turn the read data into a BigDecimal...
+		final StringBuilder sb = new StringBuilder();
+		if (negative)
+		{
+			sb.append('-');
+		}
+		for (int i = 0; i < chars.length; i++)
+		{
+			if (i == dotPosition)
+			{
+				sb.append('.');
+			}
+			sb.append(chars[i]);
+		}
+		final BigDecimal data = new BigDecimal(sb.toString());
+		data.setScale(chars.length - dotPosition, RoundingMode.HALF_UP);
+		
+		// ... and pass it to the application
+		
+		return new Measurement(data, unit, prefix);
+	}
+	
+	static byte decodeChar(final byte[] read)
+	{
+		// for the meaning of the letters, see tech. documentation link above
+		final boolean a = getBitState(read[0], 0);
+		final boolean b = getBitState(read[1], 0);
+		final boolean c = getBitState(read[1], 2);
+		final boolean d = getBitState(read[1], 3);
+		final boolean e = getBitState(read[0], 2);
+		final boolean f = getBitState(read[0], 1);
+		final boolean g = getBitState(read[1], 1);
+		
+		if (b && c)
+		{
+			if (a && d && e && f)
+			{
+				if (g)
+				{
+					return 8;
+				}
+				else
+				{
+					return 0;
+				}
+			}
+			else if (a)
+			{
+				if (g)
+				{
+					if (f && d)
+					{
+						return 9;
+					}
+					else if (d) { return 3; }
+				}
+				else
+				{
+					return 7;
+				}
+			}
+			else if (f && g)
+			{
+				return 4;
+			}
+			else
+			{
+				return 1;
+			}
+		}
+		else if (a && g && d)
+		{
+			if (f && c)
+			{
+				if (e)
+				{
+					return 6;
+				}
+				else
+				{
+					return 5;
+				}
+			}
+			else if (b && e) { return 2; }
+		}
+		return -1;
+	}
+	
+	private static boolean isPowerOfTwo(final int number)
+	{
+		return (number & (number - 1)) == 0;
+	}
+	
+	private static boolean getBitState(final byte fromByte, final int pos)
+	{
+		return (fromByte & (1 << pos)) > 0;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mtreader.SI;
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+
+/**
+ * Compares {@link VoltcraftME32Parser} to the original decoder in {@link LegacyVoltcraftME32Decoder}. The setup fails
+ * if the two disagree on a packet of the corpus, except where the parser is intentionally different: overload
+ * readings are no longer turned into zero, and a 'u' is recognized as the micro prefix.
+ * 
+ * @author Felix Kirchmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoltcraftME32Benchmark
+{
+	private final VoltcraftME32	plugin	= new VoltcraftME32();
+	private byte[][]			packets;
+	private int					packet;
+	
+	@Setup
+	public void setup(final Blackhole blackhole)
+	{
+		packets = Corpus.load(Corpus.ME32);
+		verify();
+		plugin.addReceiver(new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				blackhole.consume(data);
+			}
+		});
+	}
+	
+	private void verify()
+	{
+		final VoltcraftME32Parser parser = new VoltcraftME32Parser();
+		for (int i = 0; i < packets.length; i++)
+		{
+			final int state = parser.parse(packets[i], 0);
+			final Measurement expected = LegacyVoltcraftME32Decoder.decodePacket(packets[i]);
+			if (state == VoltcraftME32Parser.OVERLOAD
+					|| (state == VoltcraftME32Parser.VALID && parser.getPrefix() == SI.Prefix.micro))
+			{
+				continue;
+			}
+			final boolean agree;
+			if (expected == null)
+			{
+				agree = state != VoltcraftME32Parser.VALID;
+			}
+			else
+			{
+				final Measurement actual = new Measurement(parser.getMantissa(), parser.getScale(), parser.getUnit(),
+						parser.getPrefix());
+				agree = state == VoltcraftME32Parser.VALID && expected.getData().equals(actual.getData())
+						&& expected.getUnit().equals(actual.getUnit()) && expected.getPrefix() == actual.getPrefix();
+			}
+			if (!agree) { throw new IllegalStateException("Decoders disagree on packet " + i); }
+		}
+	}
+	
+	private byte[] nextPacket()
+	{
+		final byte[] next = packets[packet];
+		if (++packet == packets.length)
+		{
+			packet = 0;
+		}
+		return next;
+	}
+	
+	@Benchmark
+	public void decodePacket()
+	{
+		plugin.decodePacket(nextPacket());
+	}
+	
+	@Benchmark
+	public Measurement decodePacketLegacy()
+	{
+		return LegacyVoltcraftME32Decoder.decodePacket(nextPacket());
+	}
+}
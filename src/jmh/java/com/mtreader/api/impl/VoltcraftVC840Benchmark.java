@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+
+/**
+ * Compares the table-driven decoder of {@link VoltcraftVC840} to the original decoder in
+ * {@link LegacyVoltcraftVC840Decoder}. The setup fails if the two disagree on any frame of the corpus.
+ * 
+ * @author Felix Kirchmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoltcraftVC840Benchmark
+{
+	private final VoltcraftVC840	plugin	= new VoltcraftVC840();
+	private byte[][]				frames, digits;
+	private int						frame, digit;
+	
+	@Setup
+	public void setup(final Blackhole blackhole)
+	{
+		frames = Corpus.loadVC840Payloads();
+		digits = new byte[frames.length * 4][];
+		for (int i = 0; i < frames.length; i++)
+		{
+			for (int j = 0; j < 4; j++)
+			{
+				digits[i * 4 + j] = new byte[] { frames[i][(j * 2) + 1], frames[i][(j * 2) + 2] };
+			}
+		}
+		verify();
+		plugin.addReceiver(new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				blackhole.consume(data);
+			}
+		});
+	}
+	
+	private void verify()
+	{
+		final List<Measurement> decoded = new ArrayList<>(1);
+		final VoltcraftVC840 verified = new VoltcraftVC840();
+		verified.addReceiver(new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				decoded.add(data);
+			}
+		});
+		for (int i = 0; i < frames.length; i++)
+		{
+			decoded.clear();
+			verified.decode(frames[i], 0);
+			final Measurement actual = decoded.isEmpty() ? null : decoded.get(0);
+			final Measurement expected = LegacyVoltcraftVC840Decoder.decode(frames[i], 0);
+			if (expected == null ? actual != null : (actual == null || !expected.getData().equals(actual.getData())
+					|| !expected.getUnit().equals(actual.getUnit()) || expected.getPrefix() != actual.getPrefix())) { throw new IllegalStateException(
+					"Decoders disagree on frame " + i); }
+		}
+		for (final byte[] digit : digits)
+		{
+			if (VoltcraftVC840.decodeChar(digit[0], digit[1]) != LegacyVoltcraftVC840Decoder.decodeChar(digit)) { throw new IllegalStateException(
+					"Decoders disagree on a digit"); }
+		}
+	}
+	
+	private byte[] nextFrame()
+	{
+		final byte[] next = frames[frame];
+		if (++frame == frames.length)
+		{
+			frame = 0;
+		}
+		return next;
+	}
+	
+	private byte[] nextDigit()
+	{
+		final byte[] next = digits[digit];
+		if (++digit == digits.length)
+		{
+			digit = 0;
+		}
+		return next;
+	}
+	
+	@Benchmark
+	public void decode()
+	{
+		plugin.decode(nextFrame(), 0);
+	}
+	
+	@Benchmark
+	public Measurement decodeLegacy()
+	{
+		return LegacyVoltcraftVC840Decoder.decode(nextFrame(), 0);
+	}
+	
+	@Benchmark
+	public byte decodeChar()
+	{
+		final byte[] next = nextDigit();
+		return VoltcraftVC840.decodeChar(next[0], next[1]);
+	}
+	
+	@Benchmark
+	public byte decodeCharLegacy()
+	{
+		return LegacyVoltcraftVC840Decoder.decodeChar(nextDigit());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures frames per second when the VC-840 byte stream is fed to the framer in chunks of the given size. A chunk
+ * size of 1 corresponds to reading the port one byte at a time.
+ * 
+ * @author Felix Kirchmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoltcraftVC840FramerBenchmark
+{
+	private static final int		FRAMES	= 1024;
+	
+	@Param({ "1", "14", "256" })
+	private int						chunkSize;
+	
+	private byte[]					stream;
+	private VoltcraftVC840Framer	framer;
+	
+	@Setup
+	public void setup(final Blackhole blackhole)
+	{
+		stream = Corpus.loadStream(Corpus.VC840);
+		if (stream.length != FRAMES * VoltcraftVC840Framer.FRAME_LENGTH) { throw new IllegalStateException(); }
+		
+		framer = new VoltcraftVC840Framer(new VoltcraftVC840Framer.FrameHandler()
+		{
+			@Override
+			public void onFrames(final byte[] frames, final int count)
+			{
+				blackhole.consume(frames);
+				blackhole.consume(count);
+			}
+		});
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public void feed()
+	{
+		for (int offset = 0; offset < stream.length; offset += chunkSize)
+		{
+			framer.feed(stream, offset, Math.min(chunkSize, stream.length - offset));
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Exports a datalog as CSV. The values are formatted directly into a reused buffer and encoded through a fixed-size
+ * byte buffer.
+ *
+ * @author Felix Kirchmann
+ */
+public class CSVExport extends DatalogExport
+{
+	private final String			headerX, headerY;
+	
+	private final CharsetEncoder	encoder	= Constants.charset.newEncoder();
+	private final ByteBuffer		buffer	= ByteBuffer.allocateDirect(Constants.exportBufferSize);
+	private final StringBuilder		sb		= new StringBuilder();
+	
+	/**
+	 * @see DatalogExport#DatalogExport(DatalogStore, int[], File, boolean)
+	 */
+	public CSVExport(final DatalogStore store, final int[] rows, final String headerX, final String headerY,
+			final File file, final boolean gzip)
+	{
+		super(store, rows, file, gzip);
+		this.headerX = headerX;
+		this.headerY = headerY;
+	}
+	
+	@Override
+	protected void begin(final WritableByteChannel out) throws IOException
+	{
+		sb.append(headerX).append(';').append(headerY).append("\r\n");
+		encode(out);
+	}
+	
+	@Override
+	protected void write(final WritableByteChannel out, final int count, final long[] xMantissa, final int[] xScale,
+			final long[] yMantissa, final int[] yScale) throws IOException
+	{
+		for (int i = 0; i < count; i++)
+		{
+			Func.appendPlain(sb, xMantissa[i], xScale[i]).append(';');
+			Func.appendPlain(sb, yMantissa[i], yScale[i]).append("\r\n");
+		}
+		encode(out);
+	}
+	
+	@Override
+	protected void end(final WritableByteChannel out)
+	{
+		// Nothing follows the rows
+	}
+	
+	// Encodes and writes the contents of the builder, then clears it
+	private void encode(final WritableByteChannel out) throws IOException
+	{
+		final CharBuffer chars = CharBuffer.wrap(sb);
+		encoder.reset();
+		CoderResult result;
+		while ((result = encoder.encode(chars, buffer, true)).isOverflow())
+		{
+			drain(out);
+		}
+		if (result.isError())
+		{
+			result.throwException();
+		}
+		while (encoder.flush(buffer).isOverflow())
+		{
+			drain(out);
+		}
+		drain(out);
+		sb.setLength(0);
+	}
+	
+	private void drain(final WritableByteChannel out) throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+		{
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A recording of the raw bytes received from a device, together with the time at which they were received, so that
+ * they can be replayed with the original timing by a {@link ReplayDataDevice}. Captures are written by a
+ * {@link CapturingDataDevice}.
+ * <p>
+ * File layout (little endian):
+ *
+ * <pre>
+ * Header (16 bytes)
+ *   0  int   magic "MTRC"
+ *   4  int   format version (1)
+ *   8  long  start of the capture, nanoseconds since the epoch
+ * Chunks, one for each read from the device
+ *   0  long  time at which the bytes were received, nanoseconds since the start of the capture
+ *   8  int   number of bytes
+ *  12        the bytes
+ * </pre>
+ *
+ * @author Felix Kirchmann
+ */
+public class CaptureFile
+{
+	public static final String	extension		= "mtcap";
+	
+	static final int			magic			= 'M' | 'T' << 8 | 'R' << 16 | 'C' << 24;
+	static final int			version			= 1;
+	static final int			headerSize		= 16;
+	static final int			chunkHeaderSize	= 12;
+	
+	/**
+	 * Appends chunks to a new capture file.
+	 */
+	public static class Writer implements Closeable
+	{
+		private final FileChannel	channel;
+		private ByteBuffer			chunk	= ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+		
+		/**
+		 * @param epochNanos
+		 *            the start of the capture, to which the times of the chunks are relative
+		 * @throws IOException
+		 *             if the file already exists or can't be written
+		 */
+		public Writer(final Path file, final long epochNanos) throws IOException
+		{
+			channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			final ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(magic).putInt(version).putLong(epochNanos).flip();
+			write(header);
+		}
+		
+		/**
+		 * Appends the bytes at [offset, offset + length) of <code>src</code>, without changing its position.
+		 *
+		 * @param time
+		 *            the time at which the bytes were received, in nanoseconds since the start of the capture
+		 */
+		public void write(final long time, final ByteBuffer src, final int offset, final int length)
+				throws IOException
+		{
+			if (chunk.capacity() < chunkHeaderSize + length)
+			{
+				chunk = ByteBuffer.allocate(Integer.highestOneBit(chunkHeaderSize + length) * 2).order(
+						ByteOrder.LITTLE_ENDIAN);
+			}
+			chunk.clear();
+			chunk.putLong(time).putInt(length).put(chunkHeaderSize, src, offset, length);
+			chunk.position(chunkHeaderSize + length).flip();
+			write(chunk);
+		}
+		
+		private void write(final ByteBuffer buffer) throws IOException
+		{
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+		
+		@Override
+		public void close() throws IOException
+		{
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import com.mtreader.api.DataDevice;
+
+/**
+ * Passes all reads and writes on to another device, and records the bytes that were read to a {@link CaptureFile}.
+ * If the capture can't be written, an error is printed and the device keeps working without it.
+ *
+ * @author Felix Kirchmann
+ */
+public class CapturingDataDevice extends DataDevice implements Closeable
+{
+	private final DataDevice			device;
+	private final Path					file;
+	private final long					start	= System.nanoTime();
+	private volatile CaptureFile.Writer	writer;
+	
+	public CapturingDataDevice(final DataDevice device, final Path file) throws IOException
+	{
+		this.device = device;
+		this.file = file;
+		this.writer = new CaptureFile.Writer(file, System.currentTimeMillis() * 1000000L);
+	}
+	
+	@Override
+	public String getName()
+	{
+		return device.getName();
+	}
+	
+	@Override
+	public int read() throws IOException
+	{
+		final int read = device.read();
+		if (read != -1)
+		{
+			capture(ByteBuffer.wrap(new byte[] { (byte) read }), 0, 1);
+		}
+		return read;
+	}
+	
+	@Override
+	public byte[] read(final int numBytes) throws IOException
+	{
+		final byte[] read = device.read(numBytes);
+		capture(ByteBuffer.wrap(read), 0, read.length);
+		return read;
+	}
+	
+	@Override
+	public int read(final ByteBuffer dst) throws IOException
+	{
+		final int position = dst.position();
+		final int read = device.read(dst);
+		capture(dst, position, read);
+		return read;
+	}
+	
+	@Override
+	public int readAvailable(final ByteBuffer dst) throws IOException
+	{
+		final int position = dst.position();
+		final int read = device.readAvailable(dst);
+		capture(dst, position, read);
+		return read;
+	}
+	
+	@Override
+	public void write(final byte[] bytes) throws IOException
+	{
+		device.write(bytes);
+	}
+	
+	private void capture(final ByteBuffer read, final int offset, final int length)
+	{
+		final CaptureFile.Writer writer = this.writer;
+		if (writer == null || length <= 0) { return; }
+		try
+		{
+			writer.write(System.nanoTime() - start, read, offset, length);
+		}
+		catch (final IOException e)
+		{
+			System.err.println("Unable to write the capture " + file + ", stopped capturing: " + Func.toString(e));
+			close();
+		}
+	}
+	
+	/**
+	 * Stops capturing and closes the capture file. The device itself is not closed.
+	 */
+	@Override
+	public void close()
+	{
+		final CaptureFile.Writer writer = this.writer;
+		this.writer = null;
+		if (writer == null) { return; }
+		try
+		{
+			writer.close();
+		}
+		catch (final IOException e)
+		{
+			System.err.println("Unable to close the capture " + file + ": " + Func.toString(e));
+		}
+	}
+}
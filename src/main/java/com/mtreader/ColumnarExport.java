@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * Exports a datalog as a {@link ColumnarFile} with a decimal column for X and Y.
+ *
+ * @author Felix Kirchmann
+ */
+public class ColumnarExport extends DatalogExport
+{
+	private final ColumnarFile.Column	columnX, columnY;
+	private final SI.Unit				unitX, unitY;
+	private ColumnarFile.Writer			writer;
+	
+	/**
+	 * @param unitX
+	 *            the unit of the X values, may only be <code>null</code> if there are no rows, like unitY
+	 * @see DatalogExport#DatalogExport(DatalogStore, int[], File, boolean)
+	 */
+	public ColumnarExport(final DatalogStore store, final int[] rows, final ColumnarFile.Column columnX,
+			final SI.Unit unitX, final ColumnarFile.Column columnY, final SI.Unit unitY, final File file)
+	{
+		super(store, rows, file, false);
+		this.columnX = columnX;
+		this.columnY = columnY;
+		this.unitX = unitX;
+		this.unitY = unitY;
+	}
+	
+	@Override
+	protected void begin(final WritableByteChannel out) throws IOException
+	{
+		final Map<String, String> metadata = ColumnarFile.defaultMetadata();
+		metadata.put("source", "datalog");
+		writer = new ColumnarFile.Writer(out, metadata, columnX, columnY);
+	}
+	
+	@Override
+	protected void write(final WritableByteChannel out, final int count, final long[] xMantissa, final int[] xScale,
+			final long[] yMantissa, final int[] yScale) throws IOException
+	{
+		for (int i = 0; i < count; i++)
+		{
+			writer.setValue(0, xMantissa[i], xScale[i], unitX);
+			writer.setValue(1, yMantissa[i], yScale[i], unitY);
+			writer.endRow();
+		}
+	}
+	
+	@Override
+	protected void end(final WritableByteChannel out) throws IOException
+	{
+		writer.finish();
+	}
+}
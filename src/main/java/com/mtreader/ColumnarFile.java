@@ -0,0 +1,691 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compact binary export format for measurements, and a reader for it. The values are stored by column in blocks of
+ * up to {@link Writer#blockRows} rows; timestamps and mantissas are stored as the difference to the previous value,
+ * which is small for the slowly changing values of a multimeter, in a variable-length encoding.
+ * <p>
+ * File layout:
+ *
+ * <pre>
+ * Header
+ *   4 bytes  magic "MTCF"
+ *   varint   format version (1)
+ *   varint   number of metadata entries, followed by a key and a value string for each
+ *   varint   number of columns, followed by for each column:
+ *              byte    type: 0 = timestamps (nanoseconds since the epoch), 1 = decimal numbers
+ *              string  name
+ *              string  device, may be empty
+ *              zigzag  exponent of the SI prefix of the values, e.g. -3 for milli
+ * Blocks, up to the first block with 0 rows
+ *   varint   number of rows
+ *   for each column:
+ *     varint   decimal columns only: number of units in this block, followed by the symbol string of each
+ *     varint   length of the column data in bytes
+ *     timestamps: for each row, zigzag of the difference to the previous timestamp (to 0 for the first row)
+ *     decimals:   for each row, zigzag of the difference to the previous mantissa (to 0 for the first row),
+ *                 followed by the same for the scales, followed by a varint index into the units of the block
+ *                 for each row if there is more than one unit
+ *
+ * varint   unsigned LEB128, i.e. 7 bits per byte starting with the least significant, high bit set if more follow
+ * zigzag   a signed number as varint, mapped to (n &lt;&lt; 1) ^ (n &gt;&gt; 63) so small negative numbers stay short
+ * string   varint length in bytes, followed by the UTF-8 bytes
+ * </pre>
+ *
+ * A value is <code>mantissa * 10^-scale</code> in the prefix of its column.
+ *
+ * @author Felix Kirchmann
+ */
+public class ColumnarFile
+{
+	public static final String				extension	= "mtc";
+	
+	private static final byte[]				magic		= { 'M', 'T', 'C', 'F' };
+	private static final int				version		= 1;
+	
+	/**
+	 * Reads a whole file into memory.
+	 *
+	 * Units that are not known to {@link SI.Unit}, e.g. those of a plugin that is not loaded, are read without
+	 * registering them, see {@link SI.Unit#lookup(String)}.
+	 *
+	 * @throws IOException
+	 *             also if the file is corrupt, e.g. has more than 256 units in a column
+	 */
+	public static ColumnarFile read(final Path file) throws IOException
+	{
+		final Input in = new Input(Files.readAllBytes(file));
+		try
+		{
+			for (final byte b : magic)
+			{
+				if (in.data[in.position++] != b) { throw new IOException(file + " is not an " + extension + " file"); }
+			}
+			final long fileVersion = in.varint();
+			if (fileVersion != version) { throw new IOException("Unsupported " + extension + " version: "
+					+ fileVersion); }
+			
+			final Map<String, String> metadata = new LinkedHashMap<>();
+			for (long i = in.varint(); i > 0; i--)
+			{
+				metadata.put(in.string(), in.string());
+			}
+			final Column[] columns = new Column[(int) in.varint()];
+			for (int i = 0; i < columns.length; i++)
+			{
+				final int type = in.data[in.position++];
+				if (type < 0 || type >= Type.values().length) { throw new IOException("Unknown column type: " + type); }
+				columns[i] = new Column(Type.values()[type], in.string(), in.string(), (int) in.zigzag());
+			}
+			
+			// Count the rows first, so that the values can be decoded into arrays of the right size
+			final int blocks = in.position;
+			long rows = 0;
+			int count;
+			while ((count = (int) in.varint()) > 0)
+			{
+				rows += count;
+				for (final Column column : columns)
+				{
+					column.skipBlock(in);
+				}
+			}
+			if (rows > Integer.MAX_VALUE - 8) { throw new IOException(file + " has too many rows: " + rows); }
+			final int size = (int) rows;
+			for (final Column column : columns)
+			{
+				column.allocate(size);
+			}
+			
+			in.position = blocks;
+			int start = 0;
+			while ((count = (int) in.varint()) > 0)
+			{
+				for (final Column column : columns)
+				{
+					column.readBlock(in, start, count);
+				}
+				start += count;
+			}
+			return new ColumnarFile(Collections.unmodifiableMap(metadata), columns, size);
+		}
+		catch (final IndexOutOfBoundsException e)
+		{
+			throw new IOException(file + " is truncated", e);
+		}
+	}
+	
+	/**
+	 * @return the metadata that every export contains: the application and the time of the export
+	 */
+	public static Map<String, String> defaultMetadata()
+	{
+		final Map<String, String> metadata = new LinkedHashMap<>();
+		metadata.put("application", Constants.productName);
+		metadata.put("created", Instant.now().toString());
+		return metadata;
+	}
+	
+	private final Map<String, String>	metadata;
+	private final Column[]				columns;
+	private final int					size;
+	
+	private ColumnarFile(final Map<String, String> metadata, final Column[] columns, final int size)
+	{
+		this.metadata = metadata;
+		this.columns = columns;
+		this.size = size;
+	}
+	
+	public Map<String, String> getMetadata()
+	{
+		return metadata;
+	}
+	
+	public int getColumnCount()
+	{
+		return columns.length;
+	}
+	
+	public Column getColumn(final int index)
+	{
+		return columns[index];
+	}
+	
+	/**
+	 * @return the first column with the given name, or <code>null</code>
+	 */
+	public Column getColumn(final String name)
+	{
+		for (final Column column : columns)
+		{
+			if (column.name.equals(name)) { return column; }
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the number of rows
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	public static enum Type
+	{
+		timestamps, decimals
+	}
+	
+	/**
+	 * A column of a file. Columns that are passed to a {@link Writer} only describe the column; columns of a file
+	 * that was read also contain the values.
+	 */
+	public static final class Column
+	{
+		public static Column timestamps(final String name)
+		{
+			return new Column(Type.timestamps, name, "", 0);
+		}
+		
+		/**
+		 * @param device
+		 *            the device the values were measured with, may be empty
+		 * @param prefix
+		 *            the prefix of the values
+		 */
+		public static Column decimals(final String name, final String device, final SI.Prefix prefix)
+		{
+			return new Column(Type.decimals, name, device, prefix.exponent);
+		}
+		
+		private final Type		type;
+		private final String	name, device;
+		private final int		prefixExponent;
+		
+		// The timestamps or mantissas, and the scales of decimal columns
+		private long[]			values			= new long[0];
+		private int[]			scales			= new int[0];
+		// The units of a decimal column, and the index of the unit of each row if there is more than one
+		private SI.Unit[]		units			= new SI.Unit[0];
+		private byte[]			unitIndexes		= null;
+		
+		private Column(final Type type, final String name, final String device, final int prefixExponent)
+		{
+			this.type = type;
+			this.name = name;
+			this.device = device;
+			this.prefixExponent = prefixExponent;
+		}
+		
+		public Type getType()
+		{
+			return type;
+		}
+		
+		public String getName()
+		{
+			return name;
+		}
+		
+		public String getDevice()
+		{
+			return device;
+		}
+		
+		public int getPrefixExponent()
+		{
+			return prefixExponent;
+		}
+		
+		/**
+		 * @return the prefix of the values, or <code>null</code> if there is no {@link SI.Prefix} with the exponent
+		 */
+		public SI.Prefix getPrefix()
+		{
+			for (final SI.Prefix prefix : SI.Prefix.values())
+			{
+				if (prefix.exponent == prefixExponent) { return prefix; }
+			}
+			return null;
+		}
+		
+		/**
+		 * @return the timestamps of a timestamp column, one per row. Must not be modified.
+		 */
+		public long[] getTimestamps()
+		{
+			return values;
+		}
+		
+		/**
+		 * @return the mantissas of a decimal column, one per row. Must not be modified.
+		 */
+		public long[] getMantissas()
+		{
+			return values;
+		}
+		
+		/**
+		 * @return the scales of a decimal column, one per row. Must not be modified.
+		 */
+		public int[] getScales()
+		{
+			return scales;
+		}
+		
+		/**
+		 * @return the value of a row of a decimal column, in the prefix of the column
+		 */
+		public double getValue(final int row)
+		{
+			return DatalogStore.toKey(values[row], scales[row]);
+		}
+		
+		/**
+		 * @return the unit of a row of a decimal column, which may not be registered, see
+		 *         {@link SI.Unit#lookup(String)}
+		 */
+		public SI.Unit getUnit(final int row)
+		{
+			if (row < 0 || row >= values.length) { throw new IndexOutOfBoundsException("Row " + row + ", size "
+					+ values.length); }
+			return units[unitIndexes != null ? unitIndexes[row] & 0xFF : 0];
+		}
+		
+		private void allocate(final int size)
+		{
+			values = new long[size];
+			if (type == Type.decimals)
+			{
+				scales = new int[size];
+			}
+		}
+		
+		// Compares the symbols, as units that aren't registered are created for every block
+		private int indexOf(final SI.Unit unit) throws IOException
+		{
+			for (int i = 0; i < units.length; i++)
+			{
+				if (units[i].symbol.equals(unit.symbol)) { return i; }
+			}
+			if (units.length == 256) { throw new IOException("More than 256 units in column " + name); }
+			units = Arrays.copyOf(units, units.length + 1);
+			units[units.length - 1] = unit;
+			return units.length - 1;
+		}
+		
+		private void setUnit(final int from, final int count, final int index)
+		{
+			// Only needed once there is a second unit, before that all rows have the first one
+			if (index != 0 && unitIndexes == null)
+			{
+				unitIndexes = new byte[values.length];
+			}
+			if (unitIndexes != null)
+			{
+				Arrays.fill(unitIndexes, from, from + count, (byte) index);
+			}
+		}
+		
+		private void skipBlock(final Input in)
+		{
+			if (type == Type.decimals)
+			{
+				for (long i = in.varint(); i > 0; i--)
+				{
+					in.skip();
+				}
+			}
+			in.skip();
+		}
+		
+		private void readBlock(final Input in, final int start, final int count) throws IOException
+		{
+			// The index of each unit of the block in the units of the column
+			int[] blockUnits = null;
+			if (type == Type.decimals)
+			{
+				blockUnits = new int[(int) in.varint()];
+				for (int i = 0; i < blockUnits.length; i++)
+				{
+					// Registering the units of a file would fill up the registry
+					blockUnits[i] = indexOf(SI.Unit.lookup(in.string()));
+				}
+			}
+			
+			final int length = (int) in.varint();
+			final int end = in.position + length;
+			in.position = decodeDeltas(in.data, in.position, values, start, count);
+			if (type == Type.decimals)
+			{
+				in.position = decodeDeltas(in.data, in.position, scales, start, count);
+				if (blockUnits.length == 1)
+				{
+					setUnit(start, count, blockUnits[0]);
+				}
+				else
+				{
+					for (int i = start; i < start + count; i++)
+					{
+						final int index = (int) in.varint();
+						if (index >= blockUnits.length) { throw new IOException("Corrupt unit in column " + name); }
+						setUnit(i, 1, blockUnits[index]);
+					}
+				}
+			}
+			if (in.position != end) { throw new IOException("Corrupt block in column " + name); }
+		}
+	}
+	
+	// Decodes count zigzag differences from data into target[from, from + count), returns the new position
+	private static int decodeDeltas(final byte[] data, int position, final long[] target, final int from,
+			final int count)
+	{
+		long previous = 0;
+		for (int i = from; i < from + count; i++)
+		{
+			byte b = data[position++];
+			long value = b & 0x7F;
+			// Most values fit into one or two bytes
+			for (int shift = 7; b < 0; shift += 7)
+			{
+				b = data[position++];
+				value |= (long) (b & 0x7F) << shift;
+			}
+			previous += (value >>> 1) ^ -(value & 1);
+			target[i] = previous;
+		}
+		return position;
+	}
+	
+	private static int decodeDeltas(final byte[] data, int position, final int[] target, final int from,
+			final int count)
+	{
+		long previous = 0;
+		for (int i = from; i < from + count; i++)
+		{
+			byte b = data[position++];
+			long value = b & 0x7F;
+			// Most values fit into one or two bytes
+			for (int shift = 7; b < 0; shift += 7)
+			{
+				b = data[position++];
+				value |= (long) (b & 0x7F) << shift;
+			}
+			previous += (value >>> 1) ^ -(value & 1);
+			target[i] = (int) previous;
+		}
+		return position;
+	}
+	
+	/**
+	 * Writes a file to a channel, row by row. Set the value of every column of a row, then call {@link #endRow()}.
+	 * Call {@link #finish()} after the last row; the channel is not closed.
+	 */
+	public static final class Writer
+	{
+		public static final int				blockRows	= 16384;
+		
+		private final WritableByteChannel	out;
+		private final Column[]				columns;
+		
+		// The rows of the current block, the current row is at index rows
+		private final long[][]				values;
+		private final int[][]				scales;
+		private final byte[][]				unitIndexes;
+		// The units of each decimal column in the current block
+		private final SI.Unit[][]			units;
+		private final int[]					unitCounts;
+		private int							rows		= 0;
+		
+		private final Output				buffer		= new Output(), scratch = new Output();
+		
+		public Writer(final WritableByteChannel out, final Map<String, String> metadata, final Column... columns)
+				throws IOException
+		{
+			this.out = out;
+			this.columns = columns.clone();
+			this.values = new long[columns.length][blockRows];
+			this.scales = new int[columns.length][blockRows];
+			this.unitIndexes = new byte[columns.length][blockRows];
+			this.units = new SI.Unit[columns.length][256];
+			this.unitCounts = new int[columns.length];
+			
+			buffer.ensureCapacity(magic.length);
+			System.arraycopy(magic, 0, buffer.data, 0, magic.length);
+			buffer.position = magic.length;
+			buffer.varint(version);
+			buffer.varint(metadata.size());
+			for (final Map.Entry<String, String> entry : metadata.entrySet())
+			{
+				buffer.string(entry.getKey());
+				buffer.string(entry.getValue());
+			}
+			buffer.varint(columns.length);
+			for (final Column c : columns)
+			{
+				buffer.ensureCapacity(1);
+				buffer.data[buffer.position++] = (byte) c.type.ordinal();
+				buffer.string(c.name);
+				buffer.string(c.device);
+				buffer.zigzag(c.prefixExponent);
+			}
+			flush();
+		}
+		
+		public void setTimestamp(final int column, final long epochNanos)
+		{
+			values[column][rows] = epochNanos;
+		}
+		
+		/**
+		 * Sets the value of a decimal column, <code>mantissa * 10^-scale</code> in the prefix of the column.
+		 */
+		public void setValue(final int column, final long mantissa, final int scale, final SI.Unit unit)
+		{
+			if (unit == null) { throw new NullPointerException(); }
+			values[column][rows] = mantissa;
+			scales[column][rows] = scale;
+			unitIndexes[column][rows] = (byte) indexOf(column, unit);
+		}
+		
+		private int indexOf(final int column, final SI.Unit unit)
+		{
+			final SI.Unit[] units = this.units[column];
+			final int count = unitCounts[column];
+			for (int i = 0; i < count; i++)
+			{
+				if (units[i] == unit) { return i; }
+			}
+			if (count == units.length) { throw new IllegalArgumentException("More than " + units.length
+					+ " units in one block"); }
+			units[count] = unit;
+			unitCounts[column]++;
+			return count;
+		}
+		
+		public void endRow() throws IOException
+		{
+			if (++rows == blockRows)
+			{
+				writeBlock();
+				rows = 0;
+			}
+		}
+		
+		/**
+		 * Writes the remaining rows and the end of the file.
+		 */
+		public void finish() throws IOException
+		{
+			if (rows > 0)
+			{
+				writeBlock();
+				rows = 0;
+			}
+			buffer.varint(0);
+			flush();
+		}
+		
+		private void writeBlock() throws IOException
+		{
+			buffer.varint(rows);
+			for (int c = 0; c < columns.length; c++)
+			{
+				scratch.position = 0;
+				scratch.ensureCapacity(rows * 10);
+				final long[] values = this.values[c];
+				long previous = 0;
+				for (int i = 0; i < rows; i++)
+				{
+					scratch.zigzag(values[i] - previous);
+					previous = values[i];
+				}
+				if (columns[c].type == Type.decimals)
+				{
+					scratch.ensureCapacity(rows * 5);
+					final int[] scales = this.scales[c];
+					previous = 0;
+					for (int i = 0; i < rows; i++)
+					{
+						scratch.zigzag(scales[i] - previous);
+						previous = scales[i];
+					}
+					
+					final int count = unitCounts[c];
+					buffer.varint(count);
+					for (int i = 0; i < count; i++)
+					{
+						buffer.string(units[c][i].symbol);
+					}
+					if (count > 1)
+					{
+						scratch.ensureCapacity(rows * 2);
+						final byte[] unitIndexes = this.unitIndexes[c];
+						for (int i = 0; i < rows; i++)
+						{
+							scratch.varint(unitIndexes[i] & 0xFF);
+						}
+					}
+					unitCounts[c] = 0;
+				}
+				buffer.varint(scratch.position);
+				buffer.ensureCapacity(scratch.position);
+				System.arraycopy(scratch.data, 0, buffer.data, buffer.position, scratch.position);
+				buffer.position += scratch.position;
+			}
+			flush();
+		}
+		
+		private void flush() throws IOException
+		{
+			final ByteBuffer bytes = ByteBuffer.wrap(buffer.data, 0, buffer.position);
+			while (bytes.hasRemaining())
+			{
+				out.write(bytes);
+			}
+			buffer.position = 0;
+		}
+	}
+	
+	private static final class Output
+	{
+		byte[]	data		= new byte[Constants.exportBufferSize];
+		int		position	= 0;
+		
+		void ensureCapacity(final int bytes)
+		{
+			if (position + bytes > data.length)
+			{
+				data = Arrays.copyOf(data, Math.max(data.length * 2, position + bytes));
+			}
+		}
+		
+		void varint(long value)
+		{
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0)
+			{
+				data[position++] = (byte) (value | 0x80);
+				value >>>= 7;
+			}
+			data[position++] = (byte) value;
+		}
+		
+		void zigzag(final long value)
+		{
+			varint((value << 1) ^ (value >> 63));
+		}
+		
+		void string(final String value)
+		{
+			final byte[] bytes = value.getBytes(Constants.charset);
+			varint(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, data, position, bytes.length);
+			position += bytes.length;
+		}
+	}
+	
+	private static final class Input
+	{
+		final byte[]	data;
+		int				position	= 0;
+		
+		Input(final byte[] data)
+		{
+			this.data = data;
+		}
+		
+		long varint()
+		{
+			byte b = data[position++];
+			long value = b & 0x7F;
+			// Most values fit into one or two bytes
+			for (int shift = 7; b < 0; shift += 7)
+			{
+				b = data[position++];
+				value |= (long) (b & 0x7F) << shift;
+			}
+			return value;
+		}
+		
+		long zigzag()
+		{
+			final long value = varint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+		
+		// Skips a varint length and as many bytes
+		void skip()
+		{
+			final int length = (int) varint();
+			position += length;
+		}
+		
+		String string()
+		{
+			final int length = (int) varint();
+			final String value = new String(data, position, length, Constants.charset);
+			position += length;
+			return value;
+		}
+	}
+}
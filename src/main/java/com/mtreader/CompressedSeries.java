@@ -0,0 +1,669 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+
+/**
+ * The measurements of a connection over a long period of time, compressed in memory. Measurements are stored in
+ * blocks of up to {@link #blockSamples} samples, each of which is a bit stream in the style of Facebook's Gorilla
+ * time series database:
+ * <ul>
+ * <li>Timestamps are stored in microseconds, as the difference between the last two differences ("delta of delta"),
+ * which is 0 or close to it for a device that sends at a fixed rate: 1 bit for 0, otherwise a 2-4 bit prefix and a
+ * 7, 12 or 20 bit difference, or 64 bits if it doesn't fit.</li>
+ * <li>Values are stored in their base unit as fixed-point numbers. A value that is unchanged takes 1 bit; otherwise
+ * the difference of the mantissa takes a 2-4 bit prefix and 7, 16 or 32 bits. If the unit or scale changed or the
+ * difference doesn't fit, a 4 bit prefix is followed by the index of the unit in the block's unit table and the scale,
+ * if they changed, and the mantissa in 16, 32 or 64 bits.</li>
+ * </ul>
+ * The first timestamp and value of a block are stored uncompressed, so every block can be decoded on its own. A block
+ * holds up to {@link #blockUnits} different units; a measurement in another unit, or with a scale that doesn't fit
+ * into 8 bits, starts a new block.
+ * <p>
+ * Each block also keeps the minimum, maximum and last value of its measurements, so that a complete block can be
+ * summarized without decoding it, see {@link Cursor#isBlockStart()}. Blocks whose last measurement is older than the
+ * retention time are discarded as a whole.
+ * <p>
+ * Every measurement has an index, which counts all measurements that were ever appended to the series. Indices are
+ * not reused when measurements are discarded, so a reader can continue where it left off with {@link #readFrom(long)}.
+ *
+ * @author Felix Kirchmann
+ */
+public class CompressedSeries implements DataReceiver
+{
+	public static final int		blockSamples	= 1024;
+	public static final int		blockUnits		= 16;
+	
+	private final long			retention;
+	private final List<Block>	blocks			= new ArrayList<>();
+	private Block				current;
+	private long				size			= 0;
+	// The index of the next measurement
+	private long				end				= 0;
+	
+	/**
+	 * @param retention
+	 *            how long measurements are kept, in nanoseconds
+	 */
+	public CompressedSeries(final long retention)
+	{
+		this.retention = retention;
+	}
+	
+	@Override
+	public void onData(final Measurement data)
+	{
+		final long time = data.getSequence() >= 0 ? data.getEpochNanos() : System.currentTimeMillis() * 1000000L;
+		// mantissa * 10^-scale * 10^exponent = mantissa * 10^-(scale - exponent)
+		append(time, data.getMantissa(), data.getScale() - data.getPrefix().exponent, data.getUnitType());
+	}
+	
+	/**
+	 * Appends a measurement. Timestamps are rounded down to microseconds, and a timestamp that is less than the
+	 * previous one is replaced by the previous one.
+	 *
+	 * @param epochNanos
+	 *            the time of the measurement, in nanoseconds since the epoch
+	 * @param mantissa
+	 *            the value is <code>mantissa * 10^-scale</code> in the base unit
+	 */
+	public synchronized void append(final long epochNanos, final long mantissa, final int scale, final SI.Unit unit)
+	{
+		long micros = Math.floorDiv(epochNanos, 1000L);
+		if (current != null)
+		{
+			micros = Math.max(micros, current.lastTime);
+		}
+		
+		// Discard whole blocks that are too old, but keep the current one
+		while (blocks.size() > 1 && blocks.get(0).lastTime < micros - retention / 1000L)
+		{
+			size -= blocks.remove(0).count;
+		}
+		
+		if (current == null || current.count == blockSamples || !current.accepts(scale, unit))
+		{
+			if (current != null)
+			{
+				current.seal();
+			}
+			current = new Block(end, micros, mantissa, scale, unit);
+			blocks.add(current);
+		}
+		else
+		{
+			current.append(micros, mantissa, scale, unit);
+		}
+		size++;
+		end++;
+	}
+	
+	/**
+	 * @return the number of measurements in the series
+	 */
+	public synchronized long size()
+	{
+		return size;
+	}
+	
+	public synchronized int getBlockCount()
+	{
+		return blocks.size();
+	}
+	
+	/**
+	 * @return the time of the first measurement of a block, in nanoseconds since the epoch
+	 */
+	public synchronized long getBlockStart(final int block)
+	{
+		return blocks.get(block).firstTime * 1000L;
+	}
+	
+	/**
+	 * @return the index after the last measurement, i.e. the index of the next measurement that will be appended
+	 */
+	public synchronized long getEndIndex()
+	{
+		return end;
+	}
+	
+	/**
+	 * @return the time of the last measurement, in nanoseconds since the epoch, or {@link Long#MIN_VALUE} if the
+	 *         series is empty
+	 */
+	public synchronized long getLastTime()
+	{
+		return current == null ? Long.MIN_VALUE : current.lastTime * 1000L;
+	}
+	
+	/**
+	 * @return the approximate number of bytes used by the measurements
+	 */
+	public synchronized long getMemoryUsage()
+	{
+		long bytes = 0;
+		for (final Block block : blocks)
+		{
+			bytes += Block.overhead + block.words.length * 8L;
+		}
+		return bytes;
+	}
+	
+	public synchronized void clear()
+	{
+		blocks.clear();
+		current = null;
+		size = 0;
+	}
+	
+	/**
+	 * Returns a cursor over the measurements from the given block on. The cursor only covers the measurements that
+	 * exist when this method is called, and can be used without synchronizing on the series.
+	 */
+	public synchronized Cursor read(final int firstBlock)
+	{
+		final int count = blocks.size() - firstBlock;
+		final Block[] blocks = this.blocks.subList(firstBlock, this.blocks.size()).toArray(new Block[count]);
+		final int[] counts = new int[count];
+		final long[][] words = new long[count][];
+		final boolean[] sealed = new boolean[count];
+		for (int i = 0; i < count; i++)
+		{
+			counts[i] = blocks[i].count;
+			words[i] = blocks[i].words;
+			sealed[i] = blocks[i].sealed;
+		}
+		return new Cursor(blocks, counts, words, sealed, end, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns a cursor over the measurements from the given index on, or from the first measurement that was not
+	 * discarded yet.
+	 *
+	 * @see #read(int)
+	 */
+	public synchronized Cursor readFrom(final long index)
+	{
+		// The last block that starts at or before the index
+		int low = 0, high = blocks.size();
+		while (low < high)
+		{
+			final int mid = (low + high) >>> 1;
+			if (blocks.get(mid).offset <= index)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		final Cursor cursor = read(Math.max(low - 1, 0));
+		cursor.skipBefore = index;
+		return cursor;
+	}
+	
+	/**
+	 * Returns a cursor over the measurements with timestamps in the range [from, to], in nanoseconds since the
+	 * epoch. Only the blocks that overlap the range are decoded.
+	 *
+	 * @see #read(int)
+	 */
+	public synchronized Cursor query(final long from, final long to)
+	{
+		// The last block that starts before the range, as it may contain the first measurements of the range
+		final long fromMicros = Math.floorDiv(from, 1000L);
+		int low = 0, high = blocks.size();
+		while (low < high)
+		{
+			final int mid = (low + high) >>> 1;
+			if (blocks.get(mid).firstTime <= fromMicros)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		final Cursor cursor = read(Math.max(low - 1, 0));
+		cursor.from = from;
+		cursor.to = to;
+		return cursor;
+	}
+	
+	/**
+	 * Iterates over the measurements of a series. Call {@link #next()} before reading the first measurement.
+	 */
+	public static final class Cursor
+	{
+		private final Block[]	blocks;
+		private final int[]		counts;
+		private final long[][]	words;
+		private final boolean[]	sealed;
+		private final long		end;
+		private long			from, to, skipBefore = Long.MIN_VALUE;
+		
+		private int				block	= -1, index = 0, count = 0;
+		private final BitReader	in		= new BitReader();
+		private long			time, delta, mantissa;
+		private int				scale, unit;
+		
+		private Cursor(final Block[] blocks, final int[] counts, final long[][] words, final boolean[] sealed,
+				final long end, final long from, final long to)
+		{
+			this.blocks = blocks;
+			this.counts = counts;
+			this.words = words;
+			this.sealed = sealed;
+			this.end = end;
+			this.from = from;
+			this.to = to;
+		}
+		
+		public boolean next()
+		{
+			do
+			{
+				if (index == count)
+				{
+					if (++block == blocks.length) { return false; }
+					final Block b = blocks[block];
+					in.reset(words[block]);
+					count = counts[block];
+					index = 1;
+					time = b.firstTime;
+					delta = 0;
+					mantissa = b.firstMantissa;
+					scale = b.firstScale;
+					unit = 0;
+				}
+				else
+				{
+					delta += readDeltaOfDelta(in);
+					time += delta;
+					readValue();
+					index++;
+				}
+				if (time * 1000L > to)
+				{
+					index = count;
+					block = blocks.length - 1;
+					return false;
+				}
+			}
+			while (time * 1000L < from || blocks[block].offset + index - 1 < skipBefore);
+			return true;
+		}
+		
+		private void readValue()
+		{
+			if (in.read(1) == 0) { return; }
+			if (in.read(1) == 0)
+			{
+				mantissa += in.readSigned(7);
+			}
+			else if (in.read(1) == 0)
+			{
+				mantissa += in.readSigned(16);
+			}
+			else if (in.read(1) == 0)
+			{
+				mantissa += in.readSigned(32);
+			}
+			else
+			{
+				if (in.read(1) == 1)
+				{
+					unit = (int) in.read(4);
+				}
+				if (in.read(1) == 1)
+				{
+					scale = (int) in.readSigned(8);
+				}
+				if (in.read(1) == 0)
+				{
+					mantissa = in.readSigned(16);
+				}
+				else
+				{
+					mantissa = in.read(1) == 0 ? in.readSigned(32) : in.read(64);
+				}
+			}
+		}
+		
+		/**
+		 * @return the time of the measurement, in nanoseconds since the epoch, rounded down to microseconds
+		 */
+		public long getTime()
+		{
+			return time * 1000L;
+		}
+		
+		public long getMantissa()
+		{
+			return mantissa;
+		}
+		
+		public int getScale()
+		{
+			return scale;
+		}
+		
+		/**
+		 * @return the value in the base unit
+		 */
+		public double getValue()
+		{
+			return DatalogStore.toKey(mantissa, scale);
+		}
+		
+		public SI.Unit getUnit()
+		{
+			return blocks[block].units[unit];
+		}
+		
+		/**
+		 * @return the index of the block of the current measurement, relative to the first block of the cursor
+		 */
+		public int getBlock()
+		{
+			return block;
+		}
+		
+		/**
+		 * @return the index of the current measurement in the series
+		 */
+		public long getIndex()
+		{
+			return blocks[block].offset + index - 1;
+		}
+		
+		/**
+		 * @return the index after the last measurement that this cursor covers
+		 */
+		public long getEndIndex()
+		{
+			return end;
+		}
+		
+		/**
+		 * @return whether the current measurement is the first one of a complete block that ends within the range of
+		 *         the cursor. The block can then be summarized with {@link #getBlockMin()}, {@link #getBlockMax()},
+		 *         {@link #getBlockLastTime()} and {@link #getBlockLastValue()}, and skipped with {@link #skipBlock()}.
+		 */
+		public boolean isBlockStart()
+		{
+			return index == 1 && sealed[block] && blocks[block].lastTime * 1000L <= to;
+		}
+		
+		public double getBlockMin()
+		{
+			return blocks[block].min;
+		}
+		
+		public double getBlockMax()
+		{
+			return blocks[block].max;
+		}
+		
+		/**
+		 * @return the time of the last measurement of the current block, in nanoseconds since the epoch
+		 */
+		public long getBlockLastTime()
+		{
+			return blocks[block].lastTime * 1000L;
+		}
+		
+		public double getBlockLastValue()
+		{
+			return blocks[block].lastValue;
+		}
+		
+		/**
+		 * Skips the rest of the current block, so that {@link #next()} moves on to the first measurement of the next
+		 * block.
+		 */
+		public void skipBlock()
+		{
+			index = count;
+		}
+	}
+	
+	private static long readDeltaOfDelta(final BitReader in)
+	{
+		if (in.read(1) == 0) { return 0; }
+		if (in.read(1) == 0) { return in.readSigned(7); }
+		if (in.read(1) == 0) { return in.readSigned(12); }
+		if (in.read(1) == 0) { return in.readSigned(20); }
+		return in.read(64);
+	}
+	
+	private static boolean fits(final long value, final int bits)
+	{
+		return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+	}
+	
+	private static final class Block
+	{
+		// The object, its array and the reference in the list
+		static final int	overhead	= 104 + 16 + 8;
+		
+		final long			offset, firstTime, firstMantissa;
+		final int			firstScale;
+		final SI.Unit[]		units		= new SI.Unit[blockUnits];
+		
+		long[]				words		= new long[16];
+		int					bits		= 0, count = 1, unitCount = 1;
+		long				lastTime, lastDelta = 0, lastMantissa;
+		int					lastScale, lastUnit = 0;
+		// Only final once the block is sealed
+		double				min, max, lastValue;
+		boolean				sealed		= false;
+		
+		Block(final long offset, final long time, final long mantissa, final int scale, final SI.Unit unit)
+		{
+			this.offset = offset;
+			this.firstTime = this.lastTime = time;
+			this.firstMantissa = this.lastMantissa = mantissa;
+			this.firstScale = this.lastScale = scale;
+			this.units[0] = unit;
+			this.min = this.max = this.lastValue = DatalogStore.toKey(mantissa, scale);
+		}
+		
+		/**
+		 * @return whether a measurement with the given scale and unit can be appended to the block
+		 */
+		boolean accepts(final int scale, final SI.Unit unit)
+		{
+			return (scale == lastScale || fits(scale, 8)) && (indexOf(unit) >= 0 || unitCount < blockUnits);
+		}
+		
+		private int indexOf(final SI.Unit unit)
+		{
+			for (int i = 0; i < unitCount; i++)
+			{
+				if (units[i] == unit) { return i; }
+			}
+			return -1;
+		}
+		
+		void append(final long time, final long mantissa, final int scale, final SI.Unit unit)
+		{
+			final long delta = time - lastTime;
+			final long deltaOfDelta = delta - lastDelta;
+			if (deltaOfDelta == 0)
+			{
+				write(0, 1);
+			}
+			else if (fits(deltaOfDelta, 7))
+			{
+				write(0b10, 2);
+				write(deltaOfDelta, 7);
+			}
+			else if (fits(deltaOfDelta, 12))
+			{
+				write(0b110, 3);
+				write(deltaOfDelta, 12);
+			}
+			else if (fits(deltaOfDelta, 20))
+			{
+				write(0b1110, 4);
+				write(deltaOfDelta, 20);
+			}
+			else
+			{
+				write(0b1111, 4);
+				write(deltaOfDelta, 64);
+			}
+			
+			int unitIndex = units[lastUnit] == unit ? lastUnit : indexOf(unit);
+			if (unitIndex < 0)
+			{
+				unitIndex = unitCount++;
+				units[unitIndex] = unit;
+			}
+			final long difference = mantissa - lastMantissa;
+			if (unitIndex != lastUnit || scale != lastScale || !fits(difference, 32))
+			{
+				write(0b1111, 4);
+				if (unitIndex != lastUnit)
+				{
+					write(1, 1);
+					write(unitIndex, 4);
+				}
+				else
+				{
+					write(0, 1);
+				}
+				if (scale != lastScale)
+				{
+					write(1, 1);
+					write(scale, 8);
+				}
+				else
+				{
+					write(0, 1);
+				}
+				if (fits(mantissa, 16))
+				{
+					write(0, 1);
+					write(mantissa, 16);
+				}
+				else if (fits(mantissa, 32))
+				{
+					write(0b10, 2);
+					write(mantissa, 32);
+				}
+				else
+				{
+					write(0b11, 2);
+					write(mantissa, 64);
+				}
+			}
+			else if (difference == 0)
+			{
+				write(0, 1);
+			}
+			else if (fits(difference, 7))
+			{
+				write(0b10, 2);
+				write(difference, 7);
+			}
+			else if (fits(difference, 16))
+			{
+				write(0b110, 3);
+				write(difference, 16);
+			}
+			else
+			{
+				write(0b1110, 4);
+				write(difference, 32);
+			}
+			
+			lastTime = time;
+			lastDelta = delta;
+			lastMantissa = mantissa;
+			lastScale = scale;
+			lastUnit = unitIndex;
+			count++;
+			
+			final double value = DatalogStore.toKey(mantissa, scale);
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			lastValue = value;
+		}
+		
+		// Appends the lowest bits of the value, most significant bit first
+		private void write(final long value, final int length)
+		{
+			if (bits + length > words.length * 64)
+			{
+				words = Arrays.copyOf(words, words.length * 2);
+			}
+			final int offset = bits & 63;
+			final long masked = length == 64 ? value : value & ((1L << length) - 1);
+			final int free = 64 - offset;
+			if (length <= free)
+			{
+				words[bits >>> 6] |= masked << (free - length);
+			}
+			else
+			{
+				words[bits >>> 6] |= masked >>> (length - free);
+				words[(bits >>> 6) + 1] |= masked << (64 - (length - free));
+			}
+			bits += length;
+		}
+		
+		void seal()
+		{
+			words = Arrays.copyOf(words, (bits + 63) >>> 6);
+			sealed = true;
+		}
+	}
+	
+	private static final class BitReader
+	{
+		private long[]	words;
+		private int		position;
+		
+		void reset(final long[] words)
+		{
+			this.words = words;
+			this.position = 0;
+		}
+		
+		long read(final int length)
+		{
+			final int offset = position & 63;
+			final int available = 64 - offset;
+			long value;
+			if (length <= available)
+			{
+				value = words[position >>> 6] << offset;
+			}
+			else
+			{
+				value = words[position >>> 6] << offset | words[(position >>> 6) + 1] >>> available;
+			}
+			position += length;
+			return length == 64 ? value : value >>> (64 - length);
+		}
+		
+		long readSigned(final int length)
+		{
+			// Sign-extend the lowest bits
+			return read(length) << (64 - length) >> (64 - length);
+		}
+	}
+}
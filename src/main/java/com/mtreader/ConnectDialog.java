@@ -5,13 +5,9 @@
 
 package com.mtreader;
 
-import gnu.io.CommPortIdentifier;
-
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.List;
 
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.Event;
@@ -61,26 +57,51 @@ public class ConnectDialog implements ChangeListener<Number>
 		serialPort.getSelectionModel().selectedIndexProperty().addListener(this);
 		serialPort.getItems().clear();
 		
-		@SuppressWarnings("unchecked")
-		final Enumeration<CommPortIdentifier> ports = CommPortIdentifier.getPortIdentifiers();
-		
-		final List<String> portNames = new ArrayList<>();
-		while (ports.hasMoreElements())
+		// The ports are enumerated by the PortRegistry, which updates the list when a device is plugged in or out
+		PortRegistry.addListener(portListener);
+		setPorts(PortRegistry.getPorts());
+		stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, new EventHandler<WindowEvent>()
 		{
-			final CommPortIdentifier port = ports.nextElement();
-			if (port.getPortType() == CommPortIdentifier.PORT_SERIAL)
+			@Override
+			public void handle(final WindowEvent event)
 			{
-				portNames.add(port.getName());
+				PortRegistry.removeListener(portListener);
 			}
-		}
-		serialPort.getItems().addAll(portNames);
+		});
 		
 		deviceType.getSelectionModel().selectedIndexProperty().addListener(this);
 		deviceType.getItems().clear();
-		deviceType.getItems().addAll(MTReader.getPlugins());
+		deviceType.getItems().addAll(DeviceRegistry.getPlugins());
 	}
 	
-	private Stage	stage	= null;
+	private Stage						stage			= null;
+	
+	private final PortRegistry.Listener	portListener	= new PortRegistry.Listener()
+														{
+															@Override
+															public void portsChanged(final String[] ports)
+															{
+																Platform.runLater(new Runnable()
+																{
+																	@Override
+																	public void run()
+																	{
+																		setPorts(ports);
+																	}
+																});
+															}
+														};
+	
+	// Replaces the ports in the list, keeping the selected one if it still exists
+	private void setPorts(final String[] ports)
+	{
+		final String selected = serialPort.getSelectionModel().getSelectedItem();
+		serialPort.getItems().setAll(ports);
+		if (selected != null && serialPort.getItems().contains(selected))
+		{
+			serialPort.getSelectionModel().select(selected);
+		}
+	}
 	
 	@FXML
 	private ChoiceBox<String>	serialPort, deviceType;
@@ -108,7 +129,7 @@ public class ConnectDialog implements ChangeListener<Number>
 			});
 			dialog.show();
 			stage.hide();
-			MTReader.registerConnection(connection);
+			DeviceRegistry.registerConnection(connection);
 		}
 	}
 	
@@ -122,10 +143,8 @@ public class ConnectDialog implements ChangeListener<Number>
 	@Override
 	public void changed(final ObservableValue<? extends Number> observable, final Number oldValue, final Number newValue)
 	{
-		if (serialPort.getSelectionModel().getSelectedIndex() != -1
-				&& deviceType.getSelectionModel().getSelectedIndex() != -1)
-		{
-			connect.setDisable(false);
-		}
+		// The selected port may disappear when a device is unplugged
+		connect.setDisable(serialPort.getSelectionModel().getSelectedIndex() == -1
+				|| deviceType.getSelectionModel().getSelectedIndex() == -1);
 	}
 }
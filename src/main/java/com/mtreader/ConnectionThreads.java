@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates and keeps track of the threads of one {@link DeviceConnection}, i.e. the plugin's read loop, its pollers
+ * and the delivery threads of queued receivers, so that they can all be shut down together when the connection is
+ * closed.
+ * <p>
+ * Threads are either platform threads with minimum priority or, if requested and supported by the JVM (Java 21 or
+ * newer), virtual threads. Virtual threads are looked up reflectively, so the application still runs on older JVMs.
+ * 
+ * @author Felix Kirchmann
+ */
+public class ConnectionThreads implements ThreadFactory
+{
+	private static final MethodHandle	newVirtualThread;
+	static
+	{
+		MethodHandle handle = null;
+		try
+		{
+			final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			final MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual",
+					MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+			final MethodHandle unstarted = lookup.findVirtual(builder, "unstarted",
+					MethodType.methodType(Thread.class, Runnable.class));
+			// Thread.ofVirtual().unstarted(task)
+			handle = MethodHandles.collectArguments(unstarted.asType(MethodType.methodType(Thread.class, builder,
+					Runnable.class)), 0, ofVirtual.asType(MethodType.methodType(builder)));
+		}
+		catch (final ReflectiveOperationException e)
+		{
+			// Virtual threads are not available on this JVM
+		}
+		newVirtualThread = handle;
+	}
+	
+	public static boolean isVirtualThreadSupported()
+	{
+		return newVirtualThread != null;
+	}
+	
+	private final boolean		virtual;
+	private final Set<Thread>	threads	= ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * @param virtual
+	 *            whether to create virtual threads. Ignored if the JVM doesn't support them.
+	 */
+	public ConnectionThreads(final boolean virtual)
+	{
+		this.virtual = virtual && isVirtualThreadSupported();
+	}
+	
+	public boolean isVirtual()
+	{
+		return virtual;
+	}
+	
+	@Override
+	public Thread newThread(final Runnable task)
+	{
+		final Runnable tracked = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					task.run();
+				}
+				finally
+				{
+					threads.remove(Thread.currentThread());
+				}
+			}
+		};
+		
+		final Thread thread;
+		if (virtual)
+		{
+			try
+			{
+				thread = (Thread) newVirtualThread.invokeExact(tracked);
+			}
+			catch (final Throwable t)
+			{
+				throw new IllegalStateException("Unable to create a virtual thread", t);
+			}
+		}
+		else
+		{
+			thread = new Thread(tracked);
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+		}
+		threads.add(thread);
+		return thread;
+	}
+	
+	/**
+	 * Returns the number of threads that have been created and have not terminated yet.
+	 */
+	public int getThreadCount()
+	{
+		return threads.size();
+	}
+	
+	/**
+	 * Interrupts all threads and waits until they have terminated.
+	 * 
+	 * @return true if all threads terminated within the timeout
+	 */
+	public boolean shutdown(final long timeoutMillis)
+	{
+		for (final Thread thread : threads)
+		{
+			thread.interrupt();
+		}
+		final long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		for (final Thread thread : threads)
+		{
+			final long remaining = (deadline - System.nanoTime()) / 1000000L;
+			if (remaining <= 0)
+			{
+				break;
+			}
+			try
+			{
+				thread.join(remaining);
+			}
+			catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return threads.isEmpty();
+	}
+}
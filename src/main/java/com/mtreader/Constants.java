@@ -18,8 +18,40 @@ public class Constants
 	public static final int[]	connectWindowSize		= new int[] { 250, 77 };
 	public static final int[]	displayWindowSize		= new int[] { 336, 91 };
 	public static final int[]	datalogWindowSize		= new int[] { 190, 300 };
-	public static final int[]	datalogSetupWindowSize	= new int[] { 400, 82 };
+	public static final int[]	datalogSetupWindowSize	= new int[] { 400, 128 };
 	public static final int[]	messageBoxSize			= new int[] { 160, 80 };
+	public static final int[]	progressWindowSize		= new int[] { 260, 80 };
 	
 	public static final Charset	charset					= Charset.forName("UTF-8");
+	
+	// Measurements waiting to be recorded by a datalog in the "every sample" and "on change" modes
+	public static final int		datalogQueueCapacity	= 1024;
+	
+	// The number of pages of 4096 rows of a datalog that are kept in memory, the others are written to a temp file
+	public static final int		datalogResidentPages	= Integer.getInteger("mtreader.datalogResidentPages", 64);
+	
+	// The size of the write buffer of file exports
+	public static final int		exportBufferSize		= 64 * 1024;
+	
+	// Converts all measurements to their base unit as soon as they are decoded, see DataSource.setNormalizing()
+	public static final boolean	normalizeUnits			= Boolean.getBoolean("mtreader.normalizeUnits");
+	
+	// Runs the threads of each connection on virtual threads, if the JVM supports them (see ConnectionThreads)
+	public static final boolean	virtualThreads			= Boolean.getBoolean("mtreader.virtualThreads");
+	public static final int		virtualThreadPollInterval	= 10;											// ms
+	public static final long	connectionShutdownTimeout	= 2000;										// ms
+	
+	// How long each connection keeps its measurements in a CompressedSeries, which is shown by LiveChartWindow
+	public static final long	seriesRetention			= Long.getLong("mtreader.seriesRetentionHours", 48) * 3600
+																* 1000000000L;								// ns
+	
+	// How long PortRegistry waits after a device appeared in /dev before enumerating the ports, so that udev can
+	// finish setting it up
+	public static final long	portSettleDelay			= 500;											// ms
+	
+	// Records the measurements of every connection to a TimeSeriesStore in a subdirectory of this directory
+	public static final String	storeDirectory			= System.getProperty("mtreader.storeDirectory");
+	
+	// Records the raw bytes received from every serial port to a CaptureFile in this directory
+	public static final String	captureDirectory		= System.getProperty("mtreader.captureDirectory");
 }
@@ -15,9 +15,11 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
 import com.mtreader.DataTableWindow.ConnectionDataSource;
+import com.mtreader.DataTableWindow.RecordingMode;
 import com.mtreader.DataTableWindow.TableDataSource;
 import com.mtreader.api.Measurement;
 
@@ -60,6 +62,12 @@ public class DataTableSetupWindow
 	@FXML
 	private ChoiceBox<TableDataSource>	xDevice, yDevice;
 	
+	@FXML
+	private ChoiceBox<RecordingMode>	mode;
+	
+	@FXML
+	private TextField					interval;
+	
 	private void initialized()
 	{
 		xUnit.getItems().clear();
@@ -73,10 +81,10 @@ public class DataTableSetupWindow
 		
 		xDevice.getItems().clear();
 		xDevice.getItems().add(new DataTableWindow.CounterDataSource());
-		xDevice.getItems().addAll(ConnectionDataSource.wrapSources(MTReader.getConnections()));
+		xDevice.getItems().addAll(ConnectionDataSource.wrapSources(DeviceRegistry.getConnections()));
 		
 		yDevice.getItems().clear();
-		yDevice.getItems().addAll(ConnectionDataSource.wrapSources(MTReader.getConnections()));
+		yDevice.getItems().addAll(ConnectionDataSource.wrapSources(DeviceRegistry.getConnections()));
 		
 		xDevice.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<TableDataSource>()
 		{
@@ -93,14 +101,46 @@ public class DataTableSetupWindow
 		
 		xDevice.getSelectionModel().select(0);
 		yDevice.getSelectionModel().select(0);
+		
+		mode.getItems().clear();
+		mode.getItems().addAll(RecordingMode.values());
+		mode.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<RecordingMode>()
+		{
+			@Override
+			public void changed(final ObservableValue<? extends RecordingMode> observable,
+					final RecordingMode oldValue, final RecordingMode newValue)
+			{
+				interval.setDisable(newValue != RecordingMode.interval);
+			}
+		});
+		mode.getSelectionModel().select(RecordingMode.manual);
 	}
 	
 	@FXML
 	private void onOK(final Event event)
 	{
+		final RecordingMode selectedMode = mode.getSelectionModel().getSelectedItem();
+		long intervalMillis = 0;
+		if (selectedMode == RecordingMode.interval)
+		{
+			try
+			{
+				intervalMillis = Long.parseLong(interval.getText().trim());
+			}
+			catch (final NumberFormatException e)
+			{
+				intervalMillis = 0;
+			}
+			if (intervalMillis <= 0)
+			{
+				MessageBox.show("Error", "Please enter the recording interval in milliseconds.");
+				return;
+			}
+		}
+		
 		DataTableWindow.getInstance(xDevice.getSelectionModel().getSelectedItem(), yDevice.getSelectionModel()
 				.getSelectedItem(), xUnit.getSelectionModel().getSelectedItem(), yUnit.getSelectionModel()
-				.getSelectedItem());
+				.getSelectedItem(), selectedMode, intervalMillis);
 		stage.hide();
 	}
 	
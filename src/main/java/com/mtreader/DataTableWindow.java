@@ -6,16 +6,23 @@
 package com.mtreader;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javafx.application.Platform;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.ListChangeListener;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.Event;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Side;
@@ -25,14 +32,19 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableColumn.CellDataFeatures;
 import javafx.scene.control.TableColumn.SortType;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import javafx.util.Callback;
 
 import com.mtreader.api.DataReceiver;
 import com.mtreader.api.Measurement;
+import com.mtreader.api.OverflowPolicy;
+import com.mtreader.api.PollScheduler;
+import com.mtreader.api.QueuedReceiver;
 
 /**
  * 
@@ -41,18 +53,18 @@ import com.mtreader.api.Measurement;
 @SuppressWarnings("unused")
 public class DataTableWindow
 {
-	public static final Comparator<String>	numberComparator	= new Comparator<String>()
-																{
-																	@Override
-																	public int compare(final String o1, final String o2)
-																	{
-																		return new BigDecimal(o1)
-																				.compareTo(new BigDecimal(o2));
-																	}
-																};
-	
 	public static DataTableWindow getInstance(final TableDataSource x, final TableDataSource y, final SI.Prefix unitX,
 			final SI.Prefix unitY)
+	{
+		return getInstance(x, y, unitX, unitY, RecordingMode.manual, 0);
+	}
+	
+	/**
+	 * @param intervalMillis
+	 *            the recording interval, only used in {@link RecordingMode#interval}
+	 */
+	public static DataTableWindow getInstance(final TableDataSource x, final TableDataSource y, final SI.Prefix unitX,
+			final SI.Prefix unitY, final RecordingMode mode, final long intervalMillis)
 	{
 		final Stage stage = new Stage();
 		final FXMLLoader loader = new FXMLLoader();
@@ -74,6 +86,8 @@ public class DataTableWindow
 		window.y = y;
 		window.unitX = unitX;
 		window.unitY = unitY;
+		window.mode = mode;
+		window.interval = intervalMillis;
 		window.stage = stage;
 		
 		window.initialized();
@@ -84,7 +98,33 @@ public class DataTableWindow
 	private TableDataSource			x, y;
 	private SI.Prefix				unitX, unitY;
 	
-	private List<DataPoint>			points	= new ArrayList<>();
+	private final DatalogStore		store			= new DatalogStore(Constants.datalogResidentPages);
+	private final DatalogList		rows			= new DatalogList(store);
+	
+	private RecordingMode			mode;
+	private long					interval;
+	private PollScheduler.Registration	intervalRecording;
+	private QueuedReceiver			sampleRecording;
+	
+	// Guards the data sources and the last recorded values, as points are recorded by a background thread
+	private final Object			recordSync		= new Object();
+	private DataPoint				lastPoint;
+	private volatile String			headerX, headerY;
+	private volatile SI.Unit		dataUnitX, dataUnitY;
+	
+	// Recorded points waiting to be added to the table by the FX thread
+	private final ConcurrentLinkedQueue<DataPoint>	pending			= new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean		flushScheduled	= new AtomicBoolean(false);
+	private final Runnable			flush			= new Runnable()
+													{
+														@Override
+														public void run()
+														{
+															flush();
+														}
+													};
+	
+	private final List<DatalogExport>	exports		= new ArrayList<>();
 	
 	private Stage					stage;
 	
@@ -95,7 +135,7 @@ public class DataTableWindow
 	private Button					menuButton;
 	
 	@FXML
-	private MenuItem				deviceX, deviceY;
+	private MenuItem				deviceX, deviceY, recording;
 	
 	@FXML
 	private TableView<DataPoint>	table;
@@ -105,20 +145,45 @@ public class DataTableWindow
 	
 	private void initialized()
 	{
-		columnX.setCellValueFactory(new PropertyValueFactory<DataPoint, String>("x"));
-		columnY.setCellValueFactory(new PropertyValueFactory<DataPoint, String>("y"));
-		
-		columnX.setComparator(numberComparator);
-		columnY.setComparator(numberComparator);
+		// Only the visible rows are read from the store
+		table.setItems(rows);
+		columnX.setCellValueFactory(new Callback<CellDataFeatures<DataPoint, String>, ObservableValue<String>>()
+		{
+			@Override
+			public ObservableValue<String> call(final CellDataFeatures<DataPoint, String> cell)
+			{
+				return new ReadOnlyObjectWrapper<>(cell.getValue().getX());
+			}
+		});
+		columnY.setCellValueFactory(new Callback<CellDataFeatures<DataPoint, String>, ObservableValue<String>>()
+		{
+			@Override
+			public ObservableValue<String> call(final CellDataFeatures<DataPoint, String> cell)
+			{
+				return new ReadOnlyObjectWrapper<>(cell.getValue().getY());
+			}
+		});
 		
+		// Sort by the numeric keys of the rows instead of parsing the cell texts
+		table.setSortPolicy(new Callback<TableView<DataPoint>, Boolean>()
+		{
+			@Override
+			public Boolean call(final TableView<DataPoint> table)
+			{
+				// The listener below restores the insertion order, so the rows aren't sorted twice
+				if (table.getSortOrder().isEmpty()) { return true; }
+				rows.sortRows(getRowOrder());
+				return true;
+			}
+		});
 		table.getSortOrder().addListener(new ListChangeListener<TableColumn<DataPoint, ?>>()
 		{
 			@Override
 			public void onChanged(final Change<? extends TableColumn<DataPoint, ?>> change)
 			{
-				if (table.getSortOrder().size() == 0)
+				if (table.getSortOrder().isEmpty())
 				{
-					refreshTable();
+					rows.sortRows(null);
 				}
 			}
 		});
@@ -126,20 +191,129 @@ public class DataTableWindow
 		deviceX.setText("X: " + x.toString());
 		deviceY.setText("Y: " + y.toString());
 		
+		startRecording();
+		stage.setOnHidden(new EventHandler<WindowEvent>()
+		{
+			@Override
+			public void handle(final WindowEvent event)
+			{
+				stopRecording();
+				// Closing waits for a batch that an export is reading, and cancelled exports don't read any more
+				for (final DatalogExport export : exports)
+				{
+					export.cancel();
+				}
+				store.close();
+			}
+		});
+	}
+	
+	private void startRecording()
+	{
+		switch (mode)
+		{
+			case everySample:
+			case onChange:
+				// Y is the device that triggers recording, so its measurement is paired with the last one of X
+				final DeviceConnection connection = y.getConnection();
+				if (connection == null) { throw new IllegalArgumentException(y + " cannot trigger recording"); }
+				sampleRecording = connection.addReceiver(new DataReceiver()
+				{
+					@Override
+					public void onData(final Measurement data)
+					{
+						record(data, false);
+					}
+				}, Constants.datalogQueueCapacity, OverflowPolicy.dropOldest);
+				break;
+			case interval:
+				intervalRecording = PollScheduler.getDefault().register("Datalog", interval,
+						new PollScheduler.Poller()
+						{
+							@Override
+							public void poll()
+							{
+								record(null, false);
+							}
+						});
+				break;
+			case manual:
+				break;
+		}
+	}
+	
+	private void stopRecording()
+	{
+		if (sampleRecording != null)
+		{
+			y.getConnection().removeReceiver(sampleRecording);
+		}
+		if (intervalRecording != null)
+		{
+			intervalRecording.cancel();
+		}
 	}
 	
-	private void refreshTable()
+	/**
+	 * Returns the order of the rows for the current sort order of the table, or <code>null</code> if the table isn't
+	 * sorted. Points that are equal in all sorted columns stay in insertion order.
+	 */
+	private DatalogList.RowOrder getRowOrder()
 	{
-		table.getItems().clear();
-		table.getItems().addAll(points);
+		final int columns = table.getSortOrder().size();
+		if (columns == 0) { return null; }
+		
+		final boolean[] byX = new boolean[columns], descending = new boolean[columns];
+		for (int i = 0; i < columns; i++)
+		{
+			final TableColumn<DataPoint, ?> column = table.getSortOrder().get(i);
+			byX[i] = column == columnX;
+			descending[i] = column.getSortType() == SortType.DESCENDING;
+		}
+		return new DatalogList.KeyedRowOrder()
+		{
+			@Override
+			public double getKey(final int row)
+			{
+				final double key = byX[0] ? store.getXKey(row) : store.getYKey(row);
+				return descending[0] ? -key : key;
+			}
+			
+			@Override
+			public int compare(final int row1, final int row2)
+			{
+				for (int i = 0; i < columns; i++)
+				{
+					final int compared = byX[i] ? store.compareX(row1, row2) : store.compareY(row1, row2);
+					if (compared != 0) { return descending[i] ? -compared : compared; }
+				}
+				return Integer.compare(row1, row2);
+			}
+		};
 	}
 	
 	@FXML
 	private void onMenu(final Event e)
 	{
+		recording.setText("Recording: " + getRecordingInfo());
 		menu.show(menuButton, Side.BOTTOM, 0.0, 0.0);
 	}
 	
+	private String getRecordingInfo()
+	{
+		switch (mode)
+		{
+			case everySample:
+			case onChange:
+				return mode + " (" + sampleRecording.getDroppedCount() + " dropped)";
+			case interval:
+				final PollScheduler.Statistics statistics = intervalRecording.getStatistics();
+				return "every " + interval + " ms" + (statistics == null ? "" : " (" + statistics + ")");
+			default:
+				return mode.toString();
+		}
+	}
+	
 	private boolean	firstMeasure	= true;
 	private long	lastMeasure		= 0;
 	
@@ -148,78 +322,116 @@ public class DataTableWindow
 	{
 		if (lastMeasure >= System.currentTimeMillis()) { return; }
 		
-		final Measurement xData = this.x.getLastData();
-		final Measurement yData = this.y.getLastData();
-		
-		if (xData == null || yData == null) { return; }
+		if (record(null, true))
+		{
+			lastMeasure = System.currentTimeMillis() + 1500;
+		}
+	}
+	
+	/**
+	 * Records a data point and schedules adding it to the table. Called by the FX thread when the user clicks, or by
+	 * a background thread in the automatic recording modes.
+	 * 
+	 * @param trigger
+	 *            the measurement of Y that triggered recording, or <code>null</code> to use the last one
+	 * @param always
+	 *            whether to record even if the values didn't change in {@link RecordingMode#onChange}
+	 * @return whether a point was recorded
+	 */
+	private boolean record(final Measurement trigger, final boolean always)
+	{
+		final DataPoint point;
+		synchronized (recordSync)
+		{
+			final Measurement xData = this.x.getLastData();
+			final Measurement yData = trigger != null ? trigger : this.y.getLastData();
+			if (xData == null || yData == null) { return false; }
+			
+			final Measurement x = xData.convert(unitX);
+			final Measurement y = yData.convert(unitY);
+			point = new DataPoint(x.getMantissa(), x.getScale(), y.getMantissa(), y.getScale());
+			
+			// A counter on X changes with every point, so only the values of devices are compared
+			if (mode == RecordingMode.onChange && !always && lastPoint != null
+					&& DataPoint.byY.compare(point, lastPoint) == 0
+					&& (this.x.getConnection() == null || DataPoint.byX.compare(point, lastPoint) == 0)) { return false; }
+			
+			if (headerX == null)
+			{
+				headerX = "X in " + unitX.symbol + xData.getUnit();
+				headerY = "Y in " + unitY.symbol + yData.getUnit();
+				dataUnitX = xData.getUnitType();
+				dataUnitY = yData.getUnitType();
+			}
+			lastPoint = point;
+			
+			this.x.dataRecorded();
+			this.y.dataRecorded();
+		}
 		
-		final BigDecimal x = SI.convert(xData.getData(), xData.getPrefix(), unitX);
-		final BigDecimal y = SI.convert(yData.getData(), yData.getPrefix(), unitY);
-		final DataPoint point = new DataPoint(x, y);
+		pending.add(point);
+		if (flushScheduled.compareAndSet(false, true))
+		{
+			Platform.runLater(flush);
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds all pending points to the table at once, so that the table isn't updated for every single point.
+	 */
+	private void flush()
+	{
+		flushScheduled.set(false);
 		
-		points.add(point);
+		final List<DataPoint> batch = new ArrayList<>();
+		DataPoint point;
+		while ((point = pending.poll()) != null)
+		{
+			batch.add(point);
+		}
+		// The store is closed once the window is hidden
+		if (batch.isEmpty() || !stage.isShowing()) { return; }
 		
 		if (firstMeasure)
 		{
-			table.getItems().add(point);
-			this.columnX.setText("X in " + unitX.symbol + xData.getUnit());
-			this.columnY.setText("Y in " + unitY.symbol + yData.getUnit());
+			this.columnX.setText(headerX);
+			this.columnY.setText(headerY);
 			firstMeasure = false;
 		}
-		else
+		
+		int firstRow = -1, count = 0;
+		try
 		{
-			int newIndex = -1;
-			if (table.getSortOrder().size() > 0)
+			for (final DataPoint added : batch)
 			{
-				@SuppressWarnings("unchecked")
-				final TableColumn<DataPoint, String> sortColumn = (TableColumn<DataPoint, String>) table.getSortOrder()
-						.get(0);
-				final SortType sortType = sortColumn.getSortType();
-				final Comparator<String> comparator = sortColumn.getComparator();
-				final String newItem = sortColumn.getCellData(point);
-				
-				for (int i = 0; i < table.getItems().size(); i++)
+				final int row = store.append(added.getXMantissa(), added.getXScale(), added.getYMantissa(),
+						added.getYScale());
+				if (firstRow == -1)
 				{
-					final String currentItem = sortColumn.getCellData(i);
-					
-					final int compared = comparator.compare(newItem, currentItem);
-					
-					if ((compared == 0) || (sortType == SortType.ASCENDING && compared < 0)
-							|| (sortType == SortType.DESCENDING && compared > 0))
-					{
-						table.getItems().add(i, point);
-						newIndex = i;
-						break;
-					}
+					firstRow = row;
 				}
-				if (newIndex == -1)
-				{
-					table.getItems().add(point);
-					newIndex = table.getItems().size() - 1;
-				}
-			}
-			else
-			{
-				table.getItems().add(point);
-				newIndex = table.getItems().size() - 1;
+				count++;
 			}
-			table.scrollTo(newIndex);
 		}
-		
-		this.x.dataRecorded();
-		this.y.dataRecorded();
-		
-		lastMeasure = System.currentTimeMillis() + 1500;
+		catch (final IOException e)
+		{
+			MessageBox.show("Error", "Unable to add " + (batch.size() - count)
+					+ " data points to the datalog. Error details below.\n\n" + Func.toString(e));
+		}
+		if (count > 0)
+		{
+			table.scrollTo(rows.add(firstRow, count, getRowOrder()));
+		}
 	}
 	
 	@FXML
 	private void onDataPointDelete(final Event event)
 	{
-		final DataPoint selected = table.getSelectionModel().getSelectedItem();
-		if (selected != null)
+		final int selected = table.getSelectionModel().getSelectedIndex();
+		if (selected != -1)
 		{
-			table.getItems().remove(selected);
-			points.remove(selected);
+			rows.remove(selected);
 		}
 	}
 	
@@ -229,37 +441,65 @@ public class DataTableWindow
 		final FileChooser fileChooser = new FileChooser();
 		final FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter("Comma-separated values (*.csv)",
 				"*.csv");
+		final FileChooser.ExtensionFilter gzipFilter = new FileChooser.ExtensionFilter(
+				"Compressed comma-separated values (*.csv.gz)", "*.csv.gz");
+		fileChooser.getExtensionFilters().addAll(extFilter, gzipFilter);
+		final File chosen = fileChooser.showSaveDialog(stage);
+		if (chosen == null) { return; }
+		
+		final boolean gzip = fileChooser.getSelectedExtensionFilter() == gzipFilter
+				|| chosen.getName().toLowerCase().endsWith(".gz");
+		final File file = withExtension(chosen, gzip ? "csv.gz" : "csv");
+		// The order of the rows as they are shown now, the table can be sorted or recorded to during the export
+		run(new CSVExport(store, rows.copyRows(), columnX.getText(), columnY.getText(), file, gzip));
+	}
+	
+	@FXML
+	private void onBinaryExport(final Event event)
+	{
+		final FileChooser fileChooser = new FileChooser();
+		final FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter("MultimeterReader columns (*."
+				+ ColumnarFile.extension + ")", "*." + ColumnarFile.extension);
 		fileChooser.getExtensionFilters().add(extFilter);
-		final File file = fileChooser.showSaveDialog(stage);
-		if (file == null) { return; }
-		
-		final StringBuilder sb = new StringBuilder();
+		final File chosen = fileChooser.showSaveDialog(stage);
+		if (chosen == null) { return; }
 		
-		sb.append(columnX.getText());
-		sb.append(";");
-		sb.append(columnY.getText());
-		sb.append("\r\n");
-		
-		for (final DataPoint point : table.getItems())
-		{
-			sb.append(point.getX());
-			sb.append(";");
-			sb.append(point.getY());
-			sb.append("\r\n");
-		}
-		
-		try
+		final File file = withExtension(chosen, ColumnarFile.extension);
+		run(new ColumnarExport(store, rows.copyRows(), ColumnarFile.Column.decimals(columnX.getText(), x.toString(),
+				unitX), dataUnitX, ColumnarFile.Column.decimals(columnY.getText(), y.toString(), unitY), dataUnitY,
+				file));
+	}
+	
+	/**
+	 * Appends the extension if the user typed a name without one, which not every platform's file chooser does.
+	 */
+	private static File withExtension(final File file, final String extension)
+	{
+		return file.getName().indexOf('.') == -1 ? new File(file.getPath() + "." + extension) : file;
+	}
+	
+	private void run(final DatalogExport export)
+	{
+		export.setOnFailed(new EventHandler<WorkerStateEvent>()
 		{
-			final OutputStream out = new FileOutputStream(file);
-			out.write(sb.toString().getBytes(Constants.charset));
-			out.flush();
-			out.close();
-		}
-		catch (final IOException e)
+			@Override
+			public void handle(final WorkerStateEvent event)
+			{
+				export.getFile().delete();
+				MessageBox.show("Error", "Unable to write file '" + export.getFile().getAbsolutePath()
+						+ "'. Error details below.\n\n" + Func.toString(export.getException()));
+			}
+		});
+		for (final Iterator<DatalogExport> iterator = exports.iterator(); iterator.hasNext();)
 		{
-			MessageBox.show("Error", "Unable to write file '" + file.getAbsolutePath() + "'. Error details below.\n\n"
-					+ Func.toString(e));
+			if (iterator.next().isDone())
+			{
+				iterator.remove();
+			}
 		}
+		exports.add(export);
+		export.updateTitle();
+		ProgressWindow.run(export);
 	}
 	
 	@FXML
@@ -268,35 +508,147 @@ public class DataTableWindow
 		LineChartWindow.show(table.getItems().toArray(new DataPoint[0]), columnX.getText(), columnY.getText());
 	}
 	
+	/**
+	 * A row of the datalog. The values are stored as fixed-point numbers, like in {@link Measurement}.
+	 */
 	public static class DataPoint
 	{
-		private final BigDecimal	x, y;
-		
+		public static final Comparator<DataPoint>	byX	= new Comparator<DataPoint>()
+														{
+															@Override
+															public int compare(final DataPoint o1, final DataPoint o2)
+															{
+																return DataPoint.compare(o1.xKey,
+																		o1.xMantissa, o1.xScale, o2.xKey,
+																		o2.xMantissa, o2.xScale);
+															}
+														};
+		
+		public static final Comparator<DataPoint>	byY	= new Comparator<DataPoint>()
+														{
+															@Override
+															public int compare(final DataPoint o1, final DataPoint o2)
+															{
+																return DataPoint.compare(o1.yKey,
+																		o1.yMantissa, o1.yScale, o2.yKey,
+																		o2.yMantissa, o2.yScale);
+															}
+														};
+		
+		private final long							xMantissa, yMantissa;
+		private final int							xScale, yScale;
+		
+		// Sort keys. Rounding to double preserves the order, so only equal keys have to be compared exactly.
+		private final double						xKey, yKey;
+		
+		// The row in the DatalogStore, or -1
+		private final int							row;
+		
+		/**
+		 * @throws ArithmeticException
+		 *             if the unscaled value of <code>x</code> or <code>y</code> does not fit into a long
+		 */
 		public DataPoint(final BigDecimal x, final BigDecimal y)
 		{
-			if (x == null || y == null) { throw new NullPointerException(); }
-			this.x = x;
-			this.y = y;
+			this(x.unscaledValue().longValueExact(), x.scale(), y.unscaledValue().longValueExact(), y.scale());
+		}
+		
+		public DataPoint(final long xMantissa, final int xScale, final long yMantissa, final int yScale)
+		{
+			this(xMantissa, xScale, yMantissa, yScale, DatalogStore.toKey(xMantissa, xScale), DatalogStore.toKey(
+					yMantissa, yScale), -1);
+		}
+		
+		DataPoint(final long xMantissa, final int xScale, final long yMantissa, final int yScale, final double xKey,
+				final double yKey, final int row)
+		{
+			this.xMantissa = xMantissa;
+			this.xScale = xScale;
+			this.yMantissa = yMantissa;
+			this.yScale = yScale;
+			this.xKey = xKey;
+			this.yKey = yKey;
+			this.row = row;
+		}
+		
+		private static int compare(final double key1, final long mantissa1, final int scale1, final double key2,
+				final long mantissa2, final int scale2)
+		{
+			final int compared = Double.compare(key1, key2);
+			if (compared != 0 || mantissa1 == mantissa2 && scale1 == scale2) { return compared; }
+			return BigDecimal.valueOf(mantissa1, scale1).compareTo(BigDecimal.valueOf(mantissa2, scale2));
 		}
 		
 		public String getX()
 		{
-			return x.toPlainString();
+			return Func.toPlainString(xMantissa, xScale);
 		}
 		
 		public String getY()
 		{
-			return y.toPlainString();
+			return Func.toPlainString(yMantissa, yScale);
 		}
 		
 		public BigDecimal getXBD()
 		{
-			return x;
+			return BigDecimal.valueOf(xMantissa, xScale);
 		}
 		
 		public BigDecimal getYBD()
 		{
-			return y;
+			return BigDecimal.valueOf(yMantissa, yScale);
+		}
+		
+		public long getXMantissa()
+		{
+			return xMantissa;
+		}
+		
+		public int getXScale()
+		{
+			return xScale;
+		}
+		
+		public long getYMantissa()
+		{
+			return yMantissa;
+		}
+		
+		public int getYScale()
+		{
+			return yScale;
+		}
+		
+		// Points are created whenever a row is read from the store, so they are compared by row
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj) { return true; }
+			return row != -1 && obj instanceof DataPoint && ((DataPoint) obj).row == row;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return row != -1 ? row : System.identityHashCode(this);
+		}
+	}
+	
+	public static enum RecordingMode
+	{
+		manual("on click"), everySample("every sample"), interval("fixed interval"), onChange("on change");
+		
+		private final String	name;
+		
+		private RecordingMode(final String name)
+		{
+			this.name = name;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return name;
 		}
 	}
 	
@@ -304,6 +656,14 @@ public class DataTableWindow
 	{
 		public abstract Measurement getLastData();
 		
+		/**
+		 * @return the connection this source reads from, or <code>null</code> if it doesn't read from a device
+		 */
+		public DeviceConnection getConnection()
+		{
+			return null;
+		}
+		
 		public void dataRecorded()
 		{
 		}
@@ -315,12 +675,11 @@ public class DataTableWindow
 	public static class ConnectionDataSource extends TableDataSource implements DataReceiver
 	{
 		private final DeviceConnection	connection;
-		private Measurement				lastData	= null;
+		private volatile Measurement	lastData	= null;
 		
-		public ConnectionDataSource(final DeviceConnection connection)
+		private ConnectionDataSource(final DeviceConnection connection)
 		{
 			this.connection = connection;
-			connection.addReceiver(this);
 		}
 		
 		@Override
@@ -329,6 +688,12 @@ public class DataTableWindow
 			return lastData;
 		}
 		
+		@Override
+		public DeviceConnection getConnection()
+		{
+			return connection;
+		}
+		
 		@Override
 		public void onData(final Measurement data)
 		{
@@ -346,7 +711,11 @@ public class DataTableWindow
 			final TableDataSource[] wrappers = new TableDataSource[connections.length];
 			for (int i = 0; i < connections.length; i++)
 			{
-				wrappers[i] = new ConnectionDataSource(connections[i]);
+				// Starts with the last measurement, so that recording doesn't have to wait for the next one
+				final ConnectionDataSource wrapper = new ConnectionDataSource(connections[i]);
+				wrapper.lastData = connections[i].getLastData();
+				connections[i].addReceiver(wrapper);
+				wrappers[i] = wrapper;
 			}
 			return wrappers;
 		}
@@ -355,7 +724,7 @@ public class DataTableWindow
 	public static class CounterDataSource extends TableDataSource
 	{
 		private static final SI.Prefix	prefix	= SI.Prefix.none;
-		private static final String		unit	= "#";
+		private static final SI.Unit	unit	= SI.Unit.count;
 		
 		private int						counter	= 1;
 		
@@ -368,7 +737,7 @@ public class DataTableWindow
 		@Override
 		public Measurement getLastData()
 		{
-			return new Measurement(BigDecimal.valueOf(counter), unit, prefix);
+			return new Measurement(counter, 0, unit, prefix);
 		}
 		
 		@Override
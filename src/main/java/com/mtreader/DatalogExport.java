@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import javafx.concurrent.Task;
+
+/**
+ * Writes the rows of a datalog to a file on a background thread. The rows are read from the {@link DatalogStore} in
+ * batches and handed to the subclass, which streams them to the file, so an export needs the same amount of memory
+ * no matter how many rows there are.
+ * <p>
+ * The value of the task is the number of rows written. If the task is cancelled or fails, the incomplete file is
+ * deleted.
+ * <p>
+ * Cancelling doesn't interrupt the thread, as an interrupt while the store loads or spills a page would close the
+ * file of the store. Instead, a batch is only read if the task isn't cancelled, and the check and the read are done
+ * while holding the lock of the store. So once {@link #cancel()} returned, the store can be closed:
+ * {@link DatalogStore#close()} waits for the batch that is being read, and no batch is read after it.
+ *
+ * @author Felix Kirchmann
+ */
+public abstract class DatalogExport extends Task<Integer>
+{
+	private static final int		batchRows	= 8192;
+	
+	private final DatalogStore		store;
+	private final int[]				rows;
+	private final File				file;
+	private final boolean			gzip;
+	
+	/**
+	 * @param rows
+	 *            the rows of the store to export, in the order in which they are written. Must not be modified
+	 *            while the task runs.
+	 * @param gzip
+	 *            whether to compress the file with gzip
+	 */
+	protected DatalogExport(final DatalogStore store, final int[] rows, final File file, final boolean gzip)
+	{
+		this.store = store;
+		this.rows = rows;
+		this.file = file;
+		this.gzip = gzip;
+	}
+	
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	 * Sets the title to the name of the file. Not done by the constructor, as it needs the JavaFX toolkit.
+	 */
+	void updateTitle()
+	{
+		updateTitle("Exporting " + file.getName());
+	}
+	
+	/**
+	 * Never interrupts the thread, see above.
+	 */
+	@Override
+	public boolean cancel(final boolean mayInterruptIfRunning)
+	{
+		return super.cancel(false);
+	}
+	
+	@Override
+	protected Integer call() throws IOException
+	{
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		boolean complete = false;
+		try
+		{
+			final int written;
+			try (WritableByteChannel out = gzip ? Channels.newChannel(new GZIPOutputStream(
+					Channels.newOutputStream(channel), Constants.exportBufferSize)) : channel)
+			{
+				written = write(out);
+			}
+			finally
+			{
+				channel.close();
+			}
+			complete = written == rows.length;
+			return written;
+		}
+		finally
+		{
+			if (!complete)
+			{
+				file.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the file to the given channel.
+	 *
+	 * @return the number of rows written, less than the number of rows if the task was cancelled
+	 */
+	int write(final WritableByteChannel out) throws IOException
+	{
+		final long[] xMantissa = new long[batchRows], yMantissa = new long[batchRows];
+		final int[] xScale = new int[batchRows], yScale = new int[batchRows];
+		
+		begin(out);
+		int written = 0;
+		while (written < rows.length)
+		{
+			final int count = Math.min(batchRows, rows.length - written);
+			synchronized (store)
+			{
+				if (isCancelled()) { return written; }
+				store.read(rows, written, count, xMantissa, xScale, yMantissa, yScale);
+			}
+			write(out, count, xMantissa, xScale, yMantissa, yScale);
+			written += count;
+			
+			updateMessage(written + " of " + rows.length + " rows");
+			updateProgress(written, rows.length);
+		}
+		end(out);
+		return written;
+	}
+	
+	/**
+	 * Writes what comes before the rows.
+	 */
+	protected abstract void begin(WritableByteChannel out) throws IOException;
+	
+	/**
+	 * Writes a batch of rows. The values of the rows are at [0, count) in the arrays.
+	 */
+	protected abstract void write(WritableByteChannel out, int count, long[] xMantissa, int[] xScale,
+			long[] yMantissa, int[] yScale) throws IOException;
+	
+	/**
+	 * Writes what comes after the rows, only called if all rows were written.
+	 */
+	protected abstract void end(WritableByteChannel out) throws IOException;
+}
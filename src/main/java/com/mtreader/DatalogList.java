@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import javafx.collections.ObservableListBase;
+
+import com.mtreader.DataTableWindow.DataPoint;
+
+/**
+ * The rows of a {@link DatalogStore} in the order in which they are shown. Only the row numbers are stored; the
+ * points are read from the store when they are requested, so a table only materializes the rows that are visible.
+ *
+ * @author Felix Kirchmann
+ */
+public class DatalogList extends ObservableListBase<DataPoint>
+{
+	/**
+	 * An order of the rows of a store. Must only return 0 for equal rows.
+	 */
+	public interface RowOrder
+	{
+		public int compare(int row1, int row2);
+	}
+	
+	/**
+	 * An order whose first criterion is a numeric key, which lets {@link DatalogList#sortRows(RowOrder)} compare
+	 * keys in sequential arrays and only call {@link #compare(int, int)} for equal keys.
+	 */
+	public interface KeyedRowOrder extends RowOrder
+	{
+		/**
+		 * @return a key that is ordered like the rows, i.e. if the key of row1 is less than the key of row2, row1
+		 *         must be ordered before row2
+		 */
+		public double getKey(int row);
+	}
+	
+	private final DatalogStore	store;
+	private int[]				rows	= new int[DatalogStore.pageRows];
+	private int					size	= 0;
+	
+	public DatalogList(final DatalogStore store)
+	{
+		this.store = store;
+	}
+	
+	public DatalogStore getStore()
+	{
+		return store;
+	}
+	
+	@Override
+	public DataPoint get(final int index)
+	{
+		try
+		{
+			return store.get(getRow(index));
+		}
+		catch (final IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	public int getRow(final int index)
+	{
+		if (index < 0 || index >= size) { throw new IndexOutOfBoundsException("Index " + index + ", size " + size); }
+		return rows[index];
+	}
+	
+	/**
+	 * @return the rows of the store in the order of the list
+	 */
+	public int[] copyRows()
+	{
+		return Arrays.copyOf(rows, size);
+	}
+	
+	@Override
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Adds the rows [firstRow, firstRow + count) of the store.
+	 *
+	 * @param order
+	 *            the order of the list, or <code>null</code> to add the rows at the end
+	 * @return the index of the last added row
+	 */
+	public int add(final int firstRow, final int count, final RowOrder order)
+	{
+		if (size + count > rows.length)
+		{
+			rows = Arrays.copyOf(rows, Math.max(rows.length * 2, size + count));
+		}
+		
+		int index = size;
+		beginChange();
+		try
+		{
+			for (int row = firstRow; row < firstRow + count; row++)
+			{
+				index = order == null ? size : search(row, order);
+				System.arraycopy(rows, index, rows, index + 1, size - index);
+				rows[index] = row;
+				size++;
+				nextAdd(index, index + 1);
+			}
+		}
+		finally
+		{
+			endChange();
+		}
+		return index;
+	}
+	
+	@Override
+	public DataPoint remove(final int index)
+	{
+		final DataPoint removed = get(index);
+		System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+		size--;
+		
+		beginChange();
+		nextRemove(index, removed);
+		endChange();
+		return removed;
+	}
+	
+	/**
+	 * Sorts the list.
+	 *
+	 * @param order
+	 *            the new order, or <code>null</code> for insertion order
+	 */
+	public void sortRows(final RowOrder order)
+	{
+		if (size < 2) { return; }
+		
+		final int[] sorted = Arrays.copyOf(rows, size);
+		if (order == null)
+		{
+			Arrays.sort(sorted);
+		}
+		else if (order instanceof KeyedRowOrder)
+		{
+			final double[] keys = new double[size];
+			for (int i = 0; i < size; i++)
+			{
+				keys[i] = ((KeyedRowOrder) order).getKey(sorted[i]);
+			}
+			mergeSort(sorted, keys, order);
+		}
+		else
+		{
+			mergeSort(sorted, null, order);
+		}
+		
+		// The new index of the row that was at each index before
+		final int[] newIndexOfRow = new int[store.size()];
+		for (int i = 0; i < size; i++)
+		{
+			newIndexOfRow[sorted[i]] = i;
+		}
+		final int[] permutation = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			permutation[i] = newIndexOfRow[rows[i]];
+		}
+		System.arraycopy(sorted, 0, rows, 0, size);
+		
+		beginChange();
+		nextPermutation(0, size, permutation);
+		endChange();
+	}
+	
+	// Returns the index at which the row has to be inserted
+	private int search(final int row, final RowOrder order)
+	{
+		int low = 0, high = size;
+		while (low < high)
+		{
+			final int mid = (low + high) >>> 1;
+			if (order.compare(rows[mid], row) < 0)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	// Arrays.sort() has no variant for primitives with a custom order. If keys are given, they are sorted along.
+	private static void mergeSort(final int[] rows, final double[] keys, final RowOrder order)
+	{
+		final int length = rows.length;
+		int[] from = rows, to = new int[length];
+		double[] fromKeys = keys, toKeys = keys != null ? new double[length] : null;
+		for (int width = 1; width < length; width *= 2)
+		{
+			for (int start = 0; start < length; start += 2 * width)
+			{
+				final int middle = Math.min(start + width, length), end = Math.min(start + 2 * width, length);
+				int left = start, right = middle, target = start;
+				while (left < middle && right < end)
+				{
+					final int compared = fromKeys != null ? Double.compare(fromKeys[left], fromKeys[right]) : 0;
+					final boolean takeLeft = compared != 0 ? compared < 0 : order.compare(from[left], from[right]) <= 0;
+					final int source = takeLeft ? left++ : right++;
+					if (toKeys != null)
+					{
+						toKeys[target] = fromKeys[source];
+					}
+					to[target++] = from[source];
+				}
+				final int rest = left < middle ? left : right, restEnd = left < middle ? middle : end;
+				System.arraycopy(from, rest, to, target, restEnd - rest);
+				if (toKeys != null)
+				{
+					System.arraycopy(fromKeys, rest, toKeys, target, restEnd - rest);
+				}
+			}
+			final int[] swap = from;
+			from = to;
+			to = swap;
+			final double[] swapKeys = fromKeys;
+			fromKeys = toKeys;
+			toKeys = swapKeys;
+		}
+		if (from != rows)
+		{
+			System.arraycopy(from, 0, rows, 0, length);
+		}
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mtreader.DataTableWindow.DataPoint;
+
+/**
+ * The rows of a datalog, stored by column in pages of {@link #pageRows} rows. Only a limited number of pages is kept
+ * in memory; the least recently used pages are written to a temporary file and read back when they are accessed
+ * again. Rows are identified by their insertion index and are never modified or removed.
+ * <p>
+ * The sort keys of all rows (the values rounded to double) are kept in memory, so that sorting and sorted inserts
+ * don't have to read pages.
+ * <p>
+ * If a page can't be written to or read from the temporary file, the method that needed it throws an
+ * {@link IOException} and the store is left as it was, so the page isn't lost and the call can be retried.
+ *
+ * @author Felix Kirchmann
+ */
+public class DatalogStore implements Closeable
+{
+	public static final int				pageRows	= 4096;
+	private static final int			pageBytes	= pageRows * (8 + 4 + 8 + 4);
+	
+	private static final double[]		powersOfTen	= { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	// Values with at most 15 significant digits round to distinct doubles
+	private static final long			maxExactKey	= 1000000000000000L;
+	
+	private final int					residentPages;
+	private int							size		= 0;
+	
+	// Replaced when they grow. Volatile, so the comparison methods can read them without locking.
+	private volatile double[]			xKeys		= new double[pageRows], yKeys = new double[pageRows];
+	// Rows whose keys may be equal to those of a different value
+	private final BitSet				inexactKeys	= new BitSet();
+	
+	private final Map<Integer, Page>	pages;
+	private final BitSet				spilled		= new BitSet();
+	private Page						spare;
+	private boolean						closed		= false;
+	private File						spillFile;
+	private FileChannel					spillChannel;
+	private final ByteBuffer			io			= ByteBuffer.allocateDirect(pageBytes);
+	
+	/**
+	 * @param residentPages
+	 *            the number of pages to keep in memory
+	 */
+	public DatalogStore(final int residentPages)
+	{
+		if (residentPages < 1) { throw new IllegalArgumentException("At least one page must be resident"); }
+		this.residentPages = residentPages;
+		this.pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true);
+	}
+	
+	public synchronized int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * @return the row of the new point
+	 */
+	public synchronized int append(final long xMantissa, final int xScale, final long yMantissa, final int yScale)
+			throws IOException
+	{
+		if (closed) { throw new IllegalStateException("The datalog is closed"); }
+		final int row = size;
+		final Page page = getPage(row / pageRows);
+		final int offset = row % pageRows;
+		page.xMantissa[offset] = xMantissa;
+		page.xScale[offset] = xScale;
+		page.yMantissa[offset] = yMantissa;
+		page.yScale[offset] = yScale;
+		page.dirty = true;
+		
+		double[] xKeys = this.xKeys, yKeys = this.yKeys;
+		if (row == xKeys.length)
+		{
+			xKeys = Arrays.copyOf(xKeys, xKeys.length * 2);
+			yKeys = Arrays.copyOf(yKeys, yKeys.length * 2);
+		}
+		xKeys[row] = toKey(xMantissa, xScale);
+		yKeys[row] = toKey(yMantissa, yScale);
+		// Only published now that they contain the new keys
+		this.xKeys = xKeys;
+		this.yKeys = yKeys;
+		if (Math.abs(xMantissa) >= maxExactKey || Math.abs(yMantissa) >= maxExactKey)
+		{
+			inexactKeys.set(row);
+		}
+		
+		size++;
+		return row;
+	}
+	
+	public synchronized DataPoint get(final int row) throws IOException
+	{
+		if (closed) { throw new IllegalStateException("The datalog is closed"); }
+		if (row < 0 || row >= size) { throw new IndexOutOfBoundsException("Row " + row + ", size " + size); }
+		final Page page = getPage(row / pageRows);
+		final int offset = row % pageRows;
+		return new DataPoint(page.xMantissa[offset], page.xScale[offset], page.yMantissa[offset],
+				page.yScale[offset], xKeys[row], yKeys[row], row);
+	}
+	
+	/**
+	 * Reads the values of several rows at once. The rows are read in the order of their pages, so every page is
+	 * loaded at most once, no matter in which order the rows are given.
+	 *
+	 * @param rows
+	 *            contains the rows to read at [from, from + count)
+	 * @param xMantissa
+	 *            receives the X mantissa of rows[from + i] at index i, like the other arrays
+	 */
+	public synchronized void read(final int[] rows, final int from, final int count, final long[] xMantissa,
+			final int[] xScale, final long[] yMantissa, final int[] yScale) throws IOException
+	{
+		if (closed) { throw new IllegalStateException("The datalog is closed"); }
+		// The row in the upper half, so that sorting sorts by row, and the index in the lower half
+		final long[] order = new long[count];
+		for (int i = 0; i < count; i++)
+		{
+			final int row = rows[from + i];
+			if (row < 0 || row >= size) { throw new IndexOutOfBoundsException("Row " + row + ", size " + size); }
+			order[i] = (long) row << 32 | i;
+		}
+		Arrays.sort(order);
+		
+		Page page = null;
+		for (final long entry : order)
+		{
+			final int row = (int) (entry >>> 32), index = (int) entry;
+			if (page == null || page.index != row / pageRows)
+			{
+				page = getPage(row / pageRows);
+			}
+			final int offset = row % pageRows;
+			xMantissa[index] = page.xMantissa[offset];
+			xScale[index] = page.xScale[offset];
+			yMantissa[index] = page.yMantissa[offset];
+			yScale[index] = page.yScale[offset];
+		}
+	}
+	
+	/**
+	 * Compares the X values of two rows. Unlike the other methods, the comparison methods only lock if the keys are
+	 * not exact. They can be called from any thread for rows that it got from this store, as a row's keys are
+	 * published before {@link #append(long, int, long, int)} returns the row.
+	 *
+	 * @throws UncheckedIOException
+	 *             if the keys are not exact and the rows can't be read, as the method is meant to be used in a
+	 *             comparator
+	 */
+	public int compareX(final int row1, final int row2)
+	{
+		final double[] xKeys = this.xKeys;
+		final int compared = Double.compare(xKeys[row1], xKeys[row2]);
+		if (compared != 0 || !isInexact(row1, row2)) { return compared; }
+		try
+		{
+			return get(row1).getXBD().compareTo(get(row2).getXBD());
+		}
+		catch (final IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Compares the Y values of two rows, see {@link #compareX(int, int)}.
+	 */
+	public int compareY(final int row1, final int row2)
+	{
+		final double[] yKeys = this.yKeys;
+		final int compared = Double.compare(yKeys[row1], yKeys[row2]);
+		if (compared != 0 || !isInexact(row1, row2)) { return compared; }
+		try
+		{
+			return get(row1).getYBD().compareTo(get(row2).getYBD());
+		}
+		catch (final IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * @return the X value of a row, rounded to double, see {@link #compareX(int, int)}
+	 */
+	public double getXKey(final int row)
+	{
+		return xKeys[row];
+	}
+	
+	/**
+	 * @return the Y value of a row, rounded to double, see {@link #compareX(int, int)}
+	 */
+	public double getYKey(final int row)
+	{
+		return yKeys[row];
+	}
+	
+	private synchronized boolean isInexact(final int row1, final int row2)
+	{
+		return inexactKeys.get(row1) || inexactKeys.get(row2);
+	}
+	
+	/**
+	 * @return the number of pages that are currently in memory
+	 */
+	public synchronized int getResidentPages()
+	{
+		return pages.size();
+	}
+	
+	@Override
+	public synchronized void close()
+	{
+		closed = true;
+		pages.clear();
+		if (spillChannel != null)
+		{
+			try
+			{
+				spillChannel.close();
+			}
+			catch (final IOException e)
+			{
+				e.printStackTrace();
+			}
+			spillFile.delete();
+			spillChannel = null;
+		}
+	}
+	
+	/**
+	 * Converts a fixed-point number to the nearest double.
+	 */
+	static double toKey(final long mantissa, final int scale)
+	{
+		if (scale >= 0 && scale < powersOfTen.length && Math.abs(mantissa) < (1L << 53)) { return mantissa
+				/ powersOfTen[scale]; }
+		return BigDecimal.valueOf(mantissa, scale).doubleValue();
+	}
+	
+	private Page getPage(final int index) throws IOException
+	{
+		Page page = pages.get(index);
+		if (page == null)
+		{
+			// Make room first, so that a page that can't be spilled stays resident
+			if (pages.size() >= residentPages)
+			{
+				final Page eldest = pages.values().iterator().next();
+				spill(eldest);
+				pages.remove(eldest.index);
+			}
+			
+			page = spare != null ? spare : new Page();
+			spare = null;
+			page.index = index;
+			page.dirty = false;
+			if (spilled.get(index))
+			{
+				try
+				{
+					load(page);
+				}
+				catch (final IOException e)
+				{
+					spare = page;
+					throw e;
+				}
+			}
+			pages.put(index, page);
+		}
+		return page;
+	}
+	
+	private void spill(final Page page) throws IOException
+	{
+		// Pages that weren't modified since they were loaded are already in the file
+		if (page.dirty)
+		{
+			try
+			{
+				if (spillChannel == null)
+				{
+					spillFile = File.createTempFile("datalog", ".pages");
+					spillFile.deleteOnExit();
+					spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ,
+							StandardOpenOption.WRITE);
+				}
+				io.clear();
+				io.asLongBuffer().put(page.xMantissa).put(page.yMantissa);
+				io.position(pageRows * 16);
+				io.asIntBuffer().put(page.xScale).put(page.yScale);
+				io.position(0);
+				long position = (long) page.index * pageBytes;
+				while (io.hasRemaining())
+				{
+					position += spillChannel.write(io, position);
+				}
+			}
+			catch (final IOException e)
+			{
+				throw new IOException("Unable to write datalog page to disk", e);
+			}
+			spilled.set(page.index);
+		}
+		spare = page;
+	}
+	
+	private void load(final Page page) throws IOException
+	{
+		try
+		{
+			io.clear();
+			long position = (long) page.index * pageBytes;
+			while (io.hasRemaining())
+			{
+				final int read = spillChannel.read(io, position);
+				if (read == -1) { throw new IOException("Datalog page file is truncated"); }
+				position += read;
+			}
+		}
+		catch (final IOException e)
+		{
+			throw new IOException("Unable to read datalog page from disk", e);
+		}
+		io.position(0);
+		final LongBuffer longs = io.asLongBuffer();
+		longs.get(page.xMantissa).get(page.yMantissa);
+		io.position(pageRows * 16);
+		final IntBuffer ints = io.asIntBuffer();
+		ints.get(page.xScale).get(page.yScale);
+	}
+	
+	private static final class Page
+	{
+		int				index;
+		boolean			dirty;
+		final long[]	xMantissa	= new long[pageRows], yMantissa = new long[pageRows];
+		final int[]		xScale		= new int[pageRows], yScale = new int[pageRows];
+	}
+}
@@ -14,12 +14,17 @@ import gnu.io.UnsupportedCommOperationException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import com.mtreader.api.DataDevice;
 import com.mtreader.api.DataReceiver;
 import com.mtreader.api.DataSource;
+import com.mtreader.api.DataSourceProvider;
 import com.mtreader.api.Measurement;
+import com.mtreader.api.OverflowPolicy;
 import com.mtreader.api.PortParameters;
+import com.mtreader.api.QueuedReceiver;
 
 /**
  * 
@@ -27,14 +32,35 @@ import com.mtreader.api.PortParameters;
  */
 public class DeviceConnection
 {
+	/**
+	 * Connects to a serial port, showing a {@link MessageBox} if that fails.
+	 *
+	 * @return the connection, or <code>null</code> if it failed
+	 */
 	public static DeviceConnection getInstance(final String portName, final String deviceType)
 	{
-		final DataSource plugin = MTReader.getPlugin(deviceType);
-		if (plugin == null)
+		try
+		{
+			return open(portName, deviceType);
+		}
+		catch (final IOException e)
 		{
-			MessageBox.show("Error", "Plugin initialization failed.");
+			MessageBox.show("Error", e.getMessage());
 			return null;
 		}
+	}
+	
+	/**
+	 * Connects to a serial port. Unlike {@link #getInstance(String, String)}, this doesn't use JavaFX, so it can be
+	 * called without a display.
+	 *
+	 * @throws IOException
+	 *             if the connection failed, with a message that can be shown to the user
+	 */
+	public static DeviceConnection open(final String portName, final String deviceType) throws IOException
+	{
+		final DataSourceProvider provider = DeviceRegistry.getProvider(deviceType);
+		if (provider == null) { throw new IOException("Plugin initialization failed."); }
 		
 		InputStream in = null;
 		OutputStream out = null;
@@ -45,7 +71,7 @@ public class DeviceConnection
 			
 			port = (SerialPort) portIdentifier.open("", 2000);
 			
-			final PortParameters params = plugin.getPortParameters();
+			final PortParameters params = provider.getPortParameters();
 			port.setDTR(params.dtr);
 			port.setRTS(params.rts);
 			port.setSerialPortParams(params.baudRate, params.dataBits, params.stopBits, params.parity);
@@ -55,36 +81,94 @@ public class DeviceConnection
 		}
 		catch (final NoSuchPortException e)
 		{
-			MessageBox.show("Error", "Unable to locate port.");
-			return null;
+			throw new IOException("Unable to locate port.", e);
 		}
 		catch (final PortInUseException e)
 		{
-			MessageBox.show("Error", "Port is being used by another program.");
-			return null;
+			throw new IOException("Port is being used by another program.", e);
 		}
 		catch (final UnsupportedCommOperationException e)
 		{
-			MessageBox
-					.show("Error",
-							"This port does not support the port parameters specified by the connected device (baudrate, parity etc).");
-			return null;
+			port.close();
+			throw new IOException(
+					"This port does not support the port parameters specified by the connected device (baudrate, parity etc).",
+					e);
 		}
 		catch (final IOException e)
 		{
-			MessageBox.show("Error",
-					"An unknown error occured while trying to connect to the port.\n\n" + Func.toString(e));
-			return null;
+			port.close();
+			throw new IOException("An unknown error occured while trying to connect to the port.\n\n"
+					+ Func.toString(e), e);
 		}
 		
+		// Only now that the port is open, so a plugin is never loaded for a port that can't be used
+		final DataSource plugin = DeviceRegistry.getPlugin(deviceType);
+		if (plugin == null)
+		{
+			port.close();
+			throw new IOException("Plugin initialization failed.");
+		}
+		
+		final ConnectionThreads threads = new ConnectionThreads(Constants.virtualThreads);
+		final StreamDataDevice device = new StreamDataDevice(in, out, portName, true);
+		// Before the plugin thread starts, so that its first read doesn't block the carrier of a virtual thread
+		if (threads.isVirtual())
+		{
+			device.setPollInterval(Constants.virtualThreadPollInterval);
+		}
+		DataDevice captured = device;
+		if (Constants.captureDirectory != null)
+		{
+			try
+			{
+				captured = new CapturingDataDevice(device, Paths.get(Constants.captureDirectory, fileName(deviceType,
+						portName) + "-" + System.currentTimeMillis() + "." + CaptureFile.extension));
+			}
+			catch (final IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return start(captured, portName, deviceType, plugin, port, threads);
+	}
+	
+	/**
+	 * Connects a plugin to a device that isn't a serial port, e.g. a simulated device.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no plugin for the device type
+	 */
+	public static DeviceConnection getInstance(final DataDevice device, final String deviceType)
+	{
+		final DataSource plugin = DeviceRegistry.getPlugin(deviceType);
+		if (plugin == null) { throw new IllegalArgumentException("Unknown device type: " + deviceType); }
+		return start(device, device.getName(), deviceType, plugin, null,
+				new ConnectionThreads(Constants.virtualThreads));
+	}
+	
+	private static DeviceConnection start(final DataDevice device, final String portName, final String deviceType,
+			final DataSource plugin, final SerialPort port, final ConnectionThreads threads)
+	{
 		final DeviceConnection instance = new DeviceConnection();
 		instance.portName = portName;
 		instance.deviceType = deviceType;
 		instance.port = port;
-		instance.device = new StreamDataDevice(in, out, portName);
+		instance.device = device;
 		instance.plugin = plugin;
+		instance.threads = threads;
+		plugin.setNormalizing(Constants.normalizeUnits);
+		plugin.setThreadFactory(instance.threads);
+		plugin.addReceiver(new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				instance.lastData = data;
+				instance.series.onData(data);
+			}
+		});
 		
-		final Thread thread = new Thread(new Runnable()
+		final Thread thread = instance.threads.newThread(new Runnable()
 		{
 			@Override
 			public void run()
@@ -92,21 +176,40 @@ public class DeviceConnection
 				plugin.start(instance.device);
 			}
 		});
-		thread.setDaemon(true);
-		thread.setPriority(Thread.MIN_PRIORITY);
 		thread.setName("[Plugin] " + deviceType + " @" + portName);
 		thread.start();
 		
-		MTReader.registerConnection(instance);
+		if (Constants.storeDirectory != null)
+		{
+			try
+			{
+				instance.record(Paths.get(Constants.storeDirectory, fileName(deviceType, portName)));
+			}
+			catch (final IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		
+		DeviceRegistry.registerConnection(instance);
 		
 		return instance;
 	}
 	
+	// The name of the files and directories in which the data of a connection is recorded
+	private static String fileName(final String deviceType, final String portName)
+	{
+		return (deviceType + " @" + portName).replaceAll("[^A-Za-z0-9@._-]", "_");
+	}
+	
 	private String		deviceType, portName;
 	private DataDevice	device;
 	private DataSource	plugin;
-	private SerialPort	port;
-	private Measurement	lastData	= null;
+	private SerialPort			port;
+	private ConnectionThreads	threads;
+	private volatile Measurement	lastData	= null;
+	private final CompressedSeries	series		= new CompressedSeries(Constants.seriesRetention);
+	private TimeSeriesStore		store		= null;
 	
 	private DeviceConnection()
 	{
@@ -117,20 +220,91 @@ public class DeviceConnection
 		return lastData;
 	}
 	
+	/**
+	 * @return all measurements of this connection within {@link Constants#seriesRetention}
+	 */
+	public CompressedSeries getSeries()
+	{
+		return series;
+	}
+	
 	public void addReceiver(final DataReceiver receiver)
 	{
 		plugin.addReceiver(receiver);
 	}
 	
+	/**
+	 * @see DataSource#addReceiver(DataReceiver, int, OverflowPolicy)
+	 */
+	public QueuedReceiver addReceiver(final DataReceiver receiver, final int capacity, final OverflowPolicy policy)
+	{
+		return plugin.addReceiver(receiver, capacity, policy);
+	}
+	
+	/**
+	 * Sets the poll group of the device, see {@link DataSource#setPollGroup(String)}.
+	 */
+	public void setPollGroup(final String pollGroup)
+	{
+		plugin.setPollGroup(pollGroup);
+	}
+	
 	public void removeReceiver(final DataReceiver receiver)
 	{
 		plugin.removeReceiver(receiver);
 	}
 	
+	/**
+	 * Records all measurements of this connection to a {@link TimeSeriesStore} in the given directory, until the
+	 * connection is closed.
+	 */
+	public synchronized TimeSeriesStore record(final Path directory) throws IOException
+	{
+		if (store != null) { throw new IllegalStateException("Already recording to " + store.getDirectory()); }
+		store = new TimeSeriesStore(directory);
+		plugin.addReceiver(store);
+		return store;
+	}
+	
+	/**
+	 * @return the store this connection records to, or <code>null</code>
+	 */
+	public synchronized TimeSeriesStore getStore()
+	{
+		return store;
+	}
+	
+	/**
+	 * Stops the plugin, closes the port and waits for all threads of this connection to terminate.
+	 */
 	public void close()
 	{
 		plugin.stop();
-		port.close();
+		if (port != null)
+		{
+			port.close();
+		}
+		if (!threads.shutdown(Constants.connectionShutdownTimeout))
+		{
+			System.err.println("Some threads of " + this + " did not terminate in time");
+		}
+		synchronized (this)
+		{
+			if (store != null)
+			{
+				plugin.removeReceiver(store);
+				store.close();
+			}
+		}
+		if (device instanceof CapturingDataDevice)
+		{
+			((CapturingDataDevice) device).close();
+		}
+	}
+	
+	public int getThreadCount()
+	{
+		return threads.getThreadCount();
 	}
 	
 	@Override
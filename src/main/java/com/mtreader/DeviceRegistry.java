@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import com.mtreader.api.DataSource;
+import com.mtreader.api.DataSourceProvider;
+
+/**
+ * The device plugins and the open connections. Doesn't depend on JavaFX, so that it can be used by the
+ * {@link HeadlessRecorder} on hosts without it.
+ *
+ * @author Felix Kirchmann
+ */
+public class DeviceRegistry
+{
+	private static Map<String, DataSourceProvider>	sourcePlugins	= Collections
+																			.synchronizedMap(new HashMap<String, DataSourceProvider>());
+	private static List<DeviceConnection>			connections		= new ArrayList<>();
+	private static Object							connectionsSync	= new Object();
+	
+	/**
+	 * Registers the plugins listed in <code>META-INF/services/com.mtreader.api.DataSourceProvider</code>. Only the
+	 * providers are loaded; a plugin class is loaded when a device of its type is connected.
+	 */
+	public static void loadPlugins()
+	{
+		for (final DataSourceProvider provider : ServiceLoader.load(DataSourceProvider.class))
+		{
+			for (final String supportedDevice : provider.getSupportedDevices())
+			{
+				sourcePlugins.put(supportedDevice, provider);
+			}
+		}
+	}
+	
+	public static String[] getPlugins()
+	{
+		return sourcePlugins.keySet().toArray(new String[0]);
+	}
+	
+	/**
+	 * @return the provider of the plugin for the given device type, or <code>null</code>
+	 */
+	public static DataSourceProvider getProvider(final String name)
+	{
+		return sourcePlugins.get(name);
+	}
+	
+	/**
+	 * @return a new instance of the plugin for the given device type, or <code>null</code> if there is no such plugin
+	 *         or it couldn't be created
+	 */
+	public static DataSource getPlugin(final String name)
+	{
+		final DataSourceProvider provider = sourcePlugins.get(name);
+		if (provider == null) { return null; }
+		try
+		{
+			return provider.newDataSource();
+		}
+		catch (final RuntimeException | LinkageError e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/** -------------------------------------------------------------------------- **/
+	
+	public static void registerConnection(final DeviceConnection connection)
+	{
+		if (connection == null) { throw new NullPointerException(); }
+		synchronized (connectionsSync)
+		{
+			if (!connections.contains(connection))
+			{
+				connections.add(connection);
+			}
+		}
+	}
+	
+	public static void unregisterConnection(final DeviceConnection connection)
+	{
+		synchronized (connectionsSync)
+		{
+			connections.remove(connection);
+		}
+	}
+	
+	public static DeviceConnection[] getConnections()
+	{
+		synchronized (connectionsSync)
+		{
+			return connections.toArray(new DeviceConnection[0]);
+		}
+	}
+}
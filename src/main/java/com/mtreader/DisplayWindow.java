@@ -5,6 +5,9 @@
 
 package com.mtreader;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 import javafx.animation.FadeTransition;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -44,9 +47,11 @@ public class DisplayWindow implements DataReceiver
 	private final EventHandler<MouseEvent>	displayClickedHandler;
 	private ProgressIndicator				wait		= new ProgressIndicator(
 																ProgressIndicator.INDETERMINATE_PROGRESS);
+	private final DeviceConnection			connection;
 	
 	public DisplayWindow(final DeviceConnection connection)
 	{
+		this.connection = connection;
 		stage.setTitle(connection.toString());
 		stage.setResizable(false);
 		
@@ -110,8 +115,6 @@ public class DisplayWindow implements DataReceiver
 		data.setOnMouseClicked(displayClickedHandler);
 		unit.setOnMouseClicked(displayClickedHandler);
 		wait.setOnMouseClicked(displayClickedHandler);
-		
-		connection.addReceiver(this);
 	}
 	
 	private void configureContextMenu()
@@ -136,11 +139,41 @@ public class DisplayWindow implements DataReceiver
 			}
 		});
 		
-		contextMenu.getItems().addAll(newWindow, beginDatalog);
+		final MenuItem liveChart = new MenuItem("Show live chart");
+		liveChart.setOnAction(new EventHandler<ActionEvent>()
+		{
+			@Override
+			public void handle(final ActionEvent e)
+			{
+				LiveChartWindow.show(connection);
+			}
+		});
+		
+		final MenuItem liveChartAll = new MenuItem("Show live chart of all devices");
+		liveChartAll.setOnAction(new EventHandler<ActionEvent>()
+		{
+			@Override
+			public void handle(final ActionEvent e)
+			{
+				LiveChartWindow.show(DeviceRegistry.getConnections());
+			}
+		});
+		
+		contextMenu.getItems().addAll(newWindow, beginDatalog, liveChart, liveChartAll);
 	}
 	
+	/**
+	 * Shows the window and starts displaying the measurements of the connection, beginning with the last one.
+	 */
 	public void show()
 	{
+		// Before subscribing, so that a measurement that arrives in between isn't replaced by an older one
+		final Measurement last = connection.getLastData();
+		if (last != null)
+		{
+			onData(last);
+		}
+		connection.addReceiver(this);
 		stage.show();
 	}
 	
@@ -175,24 +208,64 @@ public class DisplayWindow implements DataReceiver
 		fadeOut.play();
 	}
 	
-	private boolean	firstMeasurement	= true;
+	private boolean								firstMeasurement	= true;
+	private SI.Prefix							shownPrefix			= null;
+	private SI.Unit								shownUnit			= null;
+	
+	// Holds the measurement that is waiting to be displayed; while it is not null, a render is already pending
+	private final AtomicReference<Measurement>	latest				= new AtomicReference<>();
+	private final AtomicLong					skippedUpdates		= new AtomicLong();
+	
+	private final Runnable						render				= new Runnable()
+																	{
+																		@Override
+																		public void run()
+																		{
+																			final Measurement measurement = latest
+																					.getAndSet(null);
+																			if (measurement != null)
+																			{
+																				show(measurement);
+																			}
+																		}
+																	};
 	
 	@Override
 	public void onData(final Measurement measurement)
 	{
-		Platform.runLater(new Runnable()
+		if (latest.getAndSet(measurement) == null)
 		{
-			@Override
-			public void run()
-			{
-				if (firstMeasurement)
-				{
-					toDisplayMode();
-					firstMeasurement = false;
-				}
-				data.setText(measurement.getData().toPlainString());
-				unit.setText(measurement.getPrefix().symbol + measurement.getUnit());
-			}
-		});
+			Platform.runLater(render);
+		}
+		else
+		{
+			// The previous measurement was never displayed
+			skippedUpdates.incrementAndGet();
+		}
+	}
+	
+	private void show(final Measurement measurement)
+	{
+		if (firstMeasurement)
+		{
+			toDisplayMode();
+			firstMeasurement = false;
+		}
+		data.setText(measurement.getData().toPlainString());
+		if (measurement.getPrefix() != shownPrefix || measurement.getUnitType() != shownUnit)
+		{
+			shownPrefix = measurement.getPrefix();
+			shownUnit = measurement.getUnitType();
+			unit.setText(shownPrefix.symbol + shownUnit.symbol);
+		}
+	}
+	
+	/**
+	 * Returns the number of measurements that were not displayed because a newer one arrived before the display was
+	 * updated.
+	 */
+	public long getSkippedUpdates()
+	{
+		return skippedUpdates.get();
 	}
 }
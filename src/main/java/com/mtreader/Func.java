@@ -7,6 +7,7 @@ package com.mtreader;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 
 /**
  * 
@@ -50,4 +51,49 @@ public class Func
 			return object.toString();
 		}
 	}
+	
+	/**
+	 * Returns the same as <code>BigDecimal.valueOf(mantissa, scale).toPlainString()</code>, without creating a
+	 * {@link java.math.BigDecimal}.
+	 */
+	public static String toPlainString(final long mantissa, final int scale)
+	{
+		return appendPlain(new StringBuilder(24), mantissa, scale).toString();
+	}
+	
+	/**
+	 * Appends the same as <code>BigDecimal.valueOf(mantissa, scale).toPlainString()</code> to the given builder.
+	 */
+	public static StringBuilder appendPlain(final StringBuilder sb, final long mantissa, final int scale)
+	{
+		final int start = sb.length() + (mantissa < 0 ? 1 : 0);
+		sb.append(mantissa);
+		if (scale < 0)
+		{
+			if (mantissa != 0)
+			{
+				for (int i = 0; i < -scale; i++)
+				{
+					sb.append('0');
+				}
+			}
+		}
+		else if (scale > 0)
+		{
+			final int digits = sb.length() - start;
+			if (digits <= scale)
+			{
+				// 0.00ddd
+				final char[] prefix = new char[scale - digits + 2];
+				Arrays.fill(prefix, '0');
+				prefix[1] = '.';
+				sb.insert(start, prefix);
+			}
+			else
+			{
+				sb.insert(sb.length() - scale, '.');
+			}
+		}
+		return sb;
+	}
 }
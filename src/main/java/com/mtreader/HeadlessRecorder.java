@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+import com.mtreader.api.OverflowPolicy;
+import com.mtreader.api.QueuedReceiver;
+
+/**
+ * Records the measurements of one or more devices without a user interface, e.g. on a server without a display. The
+ * JavaFX toolkit is never started. Started via <code>MTReaderExec --headless</code>:
+ *
+ * <pre>
+ * --headless [--config &lt;file&gt;] [--output &lt;file&gt;] [--speed &lt;factor&gt;|max]
+ *            [&lt;port&gt;=&lt;device&gt; ...]
+ * </pre>
+ *
+ * Each <code>&lt;port&gt;=&lt;device&gt;</code> pair opens a {@link DeviceConnection}, e.g.
+ * <code>"/dev/ttyUSB0=Voltcraft VC-840"</code>. The config file contains one such pair per line; empty lines and
+ * lines starting with <code>#</code> are ignored. A port of the form <code>replay:&lt;file&gt;</code> replays a
+ * {@link CaptureFile} instead, at the speed given by <code>--speed</code> (1 by default).
+ * <p>
+ * Measurements are written as lines of <code>time;connection;value;unit</code>, with the time in ISO 8601 format, to
+ * stdout or appended to the output file. Each line is flushed, so the output can be followed while recording. The
+ * recorder runs until the JVM is terminated (e.g. by SIGTERM), and then closes all connections.
+ *
+ * @author Felix Kirchmann
+ */
+public class HeadlessRecorder
+{
+	public static void main(final String[] args)
+	{
+		final List<String[]> devices = new ArrayList<>();
+		String output = null;
+		double speed = 1;
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				if (args[i].equals("--config") && i + 1 < args.length)
+				{
+					for (final String line : Files.readAllLines(Paths.get(args[++i]), Constants.charset))
+					{
+						if (!line.trim().isEmpty() && !line.trim().startsWith("#"))
+						{
+							devices.add(parseDevice(line.trim()));
+						}
+					}
+				}
+				else if (args[i].equals("--output") && i + 1 < args.length)
+				{
+					output = args[++i];
+				}
+				else if (args[i].equals("--speed") && i + 1 < args.length)
+				{
+					i++;
+					speed = args[i].equals("max") ? ReplayDataDevice.maximumSpeed : Double.parseDouble(args[i]);
+				}
+				else
+				{
+					devices.add(parseDevice(args[i]));
+				}
+			}
+		}
+		catch (final IllegalArgumentException | IOException e)
+		{
+			System.err.println(e.getMessage());
+			usage();
+		}
+		if (devices.isEmpty())
+		{
+			usage();
+		}
+		
+		DeviceRegistry.loadPlugins();
+		final HeadlessRecorder recorder;
+		try
+		{
+			recorder = new HeadlessRecorder(output == null ? System.out : new FileOutputStream(output, true));
+			recorder.setReplaySpeed(speed);
+		}
+		catch (final IOException e)
+		{
+			System.err.println("Unable to open " + output + ": " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		for (final String[] device : devices)
+		{
+			try
+			{
+				recorder.connect(device[0], device[1]);
+			}
+			catch (final IOException e)
+			{
+				System.err.println("Unable to connect to " + device[1] + " on " + device[0] + ": " + e.getMessage());
+				if (DeviceRegistry.getProvider(device[1]) == null)
+				{
+					System.err.println("Supported devices: " + Arrays.toString(DeviceRegistry.getPlugins()));
+				}
+				recorder.close();
+				System.exit(1);
+			}
+		}
+		
+		Runtime.getRuntime().addShutdownHook(new Thread("[Headless] Shutdown")
+		{
+			@Override
+			public void run()
+			{
+				recorder.close();
+			}
+		});
+		// The threads of the connections are daemon threads, so the main thread keeps the JVM running
+		try
+		{
+			new CountDownLatch(1).await();
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static String[] parseDevice(final String argument)
+	{
+		final int separator = argument.indexOf('=');
+		if (separator <= 0 || separator == argument.length() - 1) { throw new IllegalArgumentException(
+				"Expected <port>=<device>, got " + argument); }
+		return new String[] { argument.substring(0, separator).trim(), argument.substring(separator + 1).trim() };
+	}
+	
+	private static void usage()
+	{
+		System.err.println("Usage: --headless [--config <file>] [--output <file>] [--speed <factor>|max]"
+				+ " [<port>=<device> ...]");
+		System.exit(2);
+	}
+	
+	/** -------------------------------------------------------------------------- **/
+	
+	private static final String				replayPrefix	= "replay:";
+	
+	private final Writer					out;
+	private final StringBuilder				sb			= new StringBuilder();
+	private final List<DeviceConnection>	connections	= new ArrayList<>();
+	private final List<QueuedReceiver>		receivers	= new ArrayList<>();
+	private boolean							closed		= false;
+	private double							replaySpeed	= 1;
+	
+	public HeadlessRecorder(final OutputStream out)
+	{
+		this.out = new BufferedWriter(new OutputStreamWriter(out, Constants.charset), Constants.exportBufferSize);
+	}
+	
+	/**
+	 * @see ReplayDataDevice#ReplayDataDevice(java.nio.file.Path, double, boolean)
+	 */
+	public void setReplaySpeed(final double replaySpeed)
+	{
+		this.replaySpeed = replaySpeed;
+	}
+	
+	/**
+	 * Opens a connection to a serial port, or to a {@link ReplayDataDevice} if the port name starts with
+	 * <code>replay:</code>, and records its measurements.
+	 */
+	public void connect(final String portName, final String deviceType) throws IOException
+	{
+		if (portName.startsWith(replayPrefix))
+		{
+			if (DeviceRegistry.getProvider(deviceType) == null) { throw new IOException("Plugin initialization failed."); }
+			record(DeviceConnection.getInstance(new ReplayDataDevice(Paths.get(portName.substring(replayPrefix
+					.length())), replaySpeed, false), deviceType));
+		}
+		else
+		{
+			record(DeviceConnection.open(portName, deviceType));
+		}
+	}
+	
+	/**
+	 * Records the measurements of a connection, which is closed by {@link #close()}. The measurements are queued, so
+	 * a slow output doesn't stall the device.
+	 */
+	public synchronized void record(final DeviceConnection connection)
+	{
+		connections.add(connection);
+		receivers.add(connection.addReceiver(new DataReceiver()
+		{
+			@Override
+			public void onData(final Measurement data)
+			{
+				write(connection, data);
+			}
+		}, Constants.datalogQueueCapacity, OverflowPolicy.dropOldest));
+	}
+	
+	private synchronized void write(final DeviceConnection connection, final Measurement data)
+	{
+		if (closed) { return; }
+		final long time = data.getSequence() >= 0 ? data.getEpochNanos() : System.currentTimeMillis() * 1000000L;
+		DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochSecond(0, time), sb);
+		sb.append(';').append(connection).append(';');
+		Func.appendPlain(sb, data.getMantissa(), data.getScale()).append(';');
+		sb.append(data.getPrefix().symbol).append(data.getUnit()).append('\n');
+		try
+		{
+			out.append(sb).flush();
+		}
+		catch (final IOException e)
+		{
+			System.err.println("Unable to write the measurement: " + Func.toString(e));
+		}
+		sb.setLength(0);
+	}
+	
+	/**
+	 * Closes all connections and the output, and reports measurements that were dropped because the output was too
+	 * slow.
+	 */
+	public void close()
+	{
+		final DeviceConnection[] connections;
+		synchronized (this)
+		{
+			if (closed) { return; }
+			connections = this.connections.toArray(new DeviceConnection[0]);
+		}
+		// Without holding the lock, as the receivers of the connections need it to finish
+		for (final DeviceConnection connection : connections)
+		{
+			connection.close();
+			DeviceRegistry.unregisterConnection(connection);
+		}
+		synchronized (this)
+		{
+			closed = true;
+			for (int i = 0; i < connections.length; i++)
+			{
+				final long dropped = receivers.get(i).getDroppedCount();
+				if (dropped > 0)
+				{
+					System.err.println("Dropped " + dropped + " measurements of " + connections[i]);
+				}
+			}
+			try
+			{
+				out.close();
+			}
+			catch (final IOException e)
+			{
+				System.err.println("Unable to close the output: " + Func.toString(e));
+			}
+		}
+	}
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.VPos;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+
+/**
+ * A chart of the measurements of one or more connections over a sliding time window, which is updated while
+ * measuring. Each connection's values are read from its {@link CompressedSeries} and drawn onto a {@link Canvas},
+ * reduced to the minimum, maximum, first and last value of each pixel column. The chart is redrawn at most once per
+ * frame, and only if something changed.
+ * <p>
+ * The columns are buckets of a fixed width in absolute time, so they don't change when the window slides. They are
+ * filled once when the window or its width changes, using the summaries of the series' blocks where a block fits into
+ * a single column, and afterwards only the measurements that arrived since the last redraw are added. A redraw
+ * therefore costs the number of columns plus the number of new measurements, whatever the length of the window.
+ *
+ * @author Felix Kirchmann
+ */
+public class LiveChartWindow
+{
+	private static final long[]		windowLengths	= { 10, 60, 600, 3600, 4 * 3600, 8 * 3600, 24 * 3600,
+			48 * 3600								};												// s
+	private static final String[]	windowNames		= { "10 seconds", "1 minute", "10 minutes", "1 hour",
+			"4 hours", "8 hours", "1 day", "2 days"	};
+	private static final Color[]	colors			= { Color.ROYALBLUE, Color.CRIMSON, Color.FORESTGREEN,
+			Color.DARKORANGE, Color.DARKVIOLET, Color.TEAL };
+	
+	private static final double		margin			= 8, labelWidth = 70, lineHeight = 16;
+	
+	public static LiveChartWindow show(final DeviceConnection... connections)
+	{
+		final LiveChartWindow window = new LiveChartWindow(connections);
+		window.stage.show();
+		return window;
+	}
+	
+	private final Stage				stage			= new Stage();
+	private final Pane				root			= new Pane();
+	private final Canvas			canvas			= new Canvas();
+	private final ContextMenu		contextMenu		= new ContextMenu();
+	private final Series[]			series;
+	
+	private volatile boolean		dirty			= true;
+	private long					windowLength	= TimeUnit.SECONDS.toNanos(windowLengths[1]);
+	
+	// Reused between redraws
+	private double[]				columnMin		= new double[0], columnMax = new double[0],
+			columnFirst = new double[0], columnLast = new double[0];
+	
+	private final AnimationTimer	timer			= new AnimationTimer()
+													{
+														@Override
+														public void handle(final long now)
+														{
+															if (dirty)
+															{
+																dirty = false;
+																draw();
+															}
+														}
+													};
+	
+	private LiveChartWindow(final DeviceConnection[] connections)
+	{
+		stage.setTitle("Live chart");
+		
+		series = new Series[connections.length];
+		for (int i = 0; i < connections.length; i++)
+		{
+			series[i] = new Series(connections[i], colors[i % colors.length]);
+		}
+		
+		canvas.widthProperty().bind(root.widthProperty());
+		canvas.heightProperty().bind(root.heightProperty());
+		final ChangeListener<Number> resized = new ChangeListener<Number>()
+		{
+			@Override
+			public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
+					final Number newValue)
+			{
+				dirty = true;
+			}
+		};
+		canvas.widthProperty().addListener(resized);
+		canvas.heightProperty().addListener(resized);
+		root.getChildren().add(canvas);
+		
+		configureContextMenu();
+		root.setOnContextMenuRequested(new EventHandler<ContextMenuEvent>()
+		{
+			@Override
+			public void handle(final ContextMenuEvent e)
+			{
+				contextMenu.show(root, e.getScreenX(), e.getScreenY());
+			}
+		});
+		
+		stage.setScene(new Scene(root, 800, 400));
+		stage.setOnHidden(new EventHandler<WindowEvent>()
+		{
+			@Override
+			public void handle(final WindowEvent e)
+			{
+				timer.stop();
+				for (final Series s : series)
+				{
+					s.connection.removeReceiver(s);
+				}
+			}
+		});
+		
+		for (final Series s : series)
+		{
+			s.subscribe();
+		}
+		timer.start();
+	}
+	
+	private void configureContextMenu()
+	{
+		final ToggleGroup group = new ToggleGroup();
+		for (int i = 0; i < windowLengths.length; i++)
+		{
+			final long length = TimeUnit.SECONDS.toNanos(windowLengths[i]);
+			final RadioMenuItem item = new RadioMenuItem("Show last " + windowNames[i]);
+			item.setToggleGroup(group);
+			item.setSelected(length == windowLength);
+			item.setOnAction(new EventHandler<ActionEvent>()
+			{
+				@Override
+				public void handle(final ActionEvent e)
+				{
+					windowLength = length;
+					dirty = true;
+				}
+			});
+			contextMenu.getItems().add(item);
+		}
+		
+		final MenuItem clear = new MenuItem("Clear");
+		clear.setOnAction(new EventHandler<ActionEvent>()
+		{
+			@Override
+			public void handle(final ActionEvent e)
+			{
+				for (final Series s : series)
+				{
+					s.clear();
+				}
+				dirty = true;
+			}
+		});
+		contextMenu.getItems().add(clear);
+	}
+	
+	private void draw()
+	{
+		final GraphicsContext gc = canvas.getGraphicsContext2D();
+		final double width = canvas.getWidth(), height = canvas.getHeight();
+		gc.setFill(Color.WHITE);
+		gc.fillRect(0, 0, width, height);
+		
+		final double legendHeight = series.length * lineHeight;
+		final double plotX = labelWidth, plotY = margin + legendHeight, plotWidth = width - plotX - margin;
+		final double plotHeight = height - plotY - margin - lineHeight;
+		if (plotWidth < 1 || plotHeight < 1) { return; }
+		
+		final int columns = (int) plotWidth;
+		if (columnMin.length < columns)
+		{
+			columnMin = new double[columns];
+			columnMax = new double[columns];
+			columnFirst = new double[columns];
+			columnLast = new double[columns];
+		}
+		
+		// The window ends with the most recent measurement of all connections
+		final long bucketWidth = Math.max((windowLength + columns - 1) / columns, 1);
+		long end = Long.MIN_VALUE;
+		for (final Series s : series)
+		{
+			s.update(bucketWidth, columns);
+			end = Math.max(end, s.getLastTime());
+		}
+		final long lastBucket = Math.floorDiv(end, bucketWidth);
+		
+		gc.setFont(Font.font("System", 11));
+		gc.setTextBaseline(VPos.CENTER);
+		drawFrame(gc, plotX, plotY, plotWidth, plotHeight);
+		
+		for (int i = 0; i < series.length; i++)
+		{
+			final Series s = series[i];
+			final int used = end == Long.MIN_VALUE ? 0 : s.getColumns(lastBucket, columns, columnMin, columnMax,
+					columnFirst, columnLast);
+			
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			for (int c = 0; c < columns; c++)
+			{
+				if (!Double.isNaN(columnMin[c]))
+				{
+					min = Math.min(min, columnMin[c]);
+					max = Math.max(max, columnMax[c]);
+				}
+			}
+			
+			gc.setTextAlign(TextAlignment.LEFT);
+			gc.setFill(s.color);
+			gc.fillText(s.connection + (used == 0 ? "" : ": " + format(min) + " … " + format(max) + " " + s.unit),
+					plotX, margin + (i + 0.5) * lineHeight);
+			if (used == 0)
+			{
+				continue;
+			}
+			
+			if (max == min)
+			{
+				max += 0.5;
+				min -= 0.5;
+			}
+			final double range = max - min;
+			min -= range * 0.05;
+			max += range * 0.05;
+			
+			// The axis shows the scale of the first connection; the others are labeled in the legend
+			if (i == 0)
+			{
+				drawValueAxis(gc, plotX, plotY, plotHeight, min, max);
+			}
+			
+			final double scale = plotHeight / (max - min);
+			gc.setStroke(s.color);
+			gc.setLineWidth(1);
+			gc.beginPath();
+			boolean first = true;
+			for (int c = 0; c < columns; c++)
+			{
+				if (Double.isNaN(columnMin[c]))
+				{
+					continue;
+				}
+				final double x = plotX + c + 0.5;
+				final double yFirst = plotY + (max - columnFirst[c]) * scale;
+				if (first)
+				{
+					gc.moveTo(x, yFirst);
+					first = false;
+				}
+				else
+				{
+					gc.lineTo(x, yFirst);
+				}
+				gc.moveTo(x, plotY + (max - columnMin[c]) * scale);
+				gc.lineTo(x, plotY + (max - columnMax[c]) * scale);
+				gc.moveTo(x, plotY + (max - columnLast[c]) * scale);
+			}
+			gc.stroke();
+		}
+	}
+	
+	private void drawFrame(final GraphicsContext gc, final double x, final double y, final double width,
+			final double height)
+	{
+		gc.setStroke(Color.GRAY);
+		gc.setLineWidth(1);
+		gc.strokeRect(x + 0.5, y + 0.5, width - 1, height - 1);
+		
+		gc.setFill(Color.GRAY);
+		gc.setTextAlign(TextAlignment.LEFT);
+		gc.fillText("-" + windowNames[indexOfWindowLength()], x, y + height + lineHeight / 2);
+		gc.setTextAlign(TextAlignment.RIGHT);
+		gc.fillText("latest", x + width, y + height + lineHeight / 2);
+	}
+	
+	private void drawValueAxis(final GraphicsContext gc, final double x, final double y, final double height,
+			final double min, final double max)
+	{
+		gc.setFill(Color.GRAY);
+		gc.setTextAlign(TextAlignment.RIGHT);
+		gc.setStroke(Color.gray(0.9));
+		for (int i = 0; i <= 4; i++)
+		{
+			final double lineY = y + height * i / 4;
+			gc.fillText(format(max - (max - min) * i / 4), x - 4, lineY);
+			if (i > 0 && i < 4)
+			{
+				gc.strokeLine(x + 1, Math.floor(lineY) + 0.5, x + canvas.getWidth() - labelWidth - margin - 1,
+						Math.floor(lineY) + 0.5);
+			}
+		}
+	}
+	
+	private int indexOfWindowLength()
+	{
+		for (int i = 0; i < windowLengths.length; i++)
+		{
+			if (TimeUnit.SECONDS.toNanos(windowLengths[i]) == windowLength) { return i; }
+		}
+		return 0;
+	}
+	
+	private static String format(final double value)
+	{
+		if (Double.isNaN(value) || Double.isInfinite(value)) { return "-"; }
+		return new BigDecimal(value).round(new MathContext(4)).stripTrailingZeros().toPlainString();
+	}
+	
+	/**
+	 * The measurements of one connection, read from its {@link CompressedSeries} and reduced to buckets. Receives the
+	 * connection's measurements only to know when to redraw. The series is decoded without holding its lock, so the
+	 * plugin thread only waits while a cursor is created, never for a redraw.
+	 */
+	private final class Series implements DataReceiver
+	{
+		final DeviceConnection	connection;
+		final Color				color;
+		volatile String			unit			= "";
+		
+		// Measurements before this time are not shown, see clear()
+		private long			clearedBefore	= Long.MIN_VALUE;
+		
+		// The minimum, maximum, first and last value of each bucket of bucketWidth ns, in a ring of one slot per column
+		// that is indexed by the bucket number modulo the number of columns. Only used on the FX thread.
+		private long			bucketWidth		= 0;
+		private long[]			buckets			= new long[0];
+		private double[]		min				= new double[0], max = new double[0], first = new double[0],
+				last = new double[0];
+		// The index of the next measurement to add, and the time of the last one that was added
+		private long			nextIndex		= 0, lastTime = Long.MIN_VALUE;
+		
+		Series(final DeviceConnection connection, final Color color)
+		{
+			this.connection = connection;
+			this.color = color;
+		}
+		
+		void subscribe()
+		{
+			connection.addReceiver(this);
+			final Measurement last = connection.getLastData();
+			if (last != null)
+			{
+				unit = last.getUnitType().symbol;
+			}
+		}
+		
+		@Override
+		public void onData(final Measurement data)
+		{
+			unit = data.getUnitType().symbol;
+			dirty = true;
+		}
+		
+		void clear()
+		{
+			final long last = connection.getSeries().getLastTime();
+			if (last != Long.MIN_VALUE)
+			{
+				clearedBefore = last + 1;
+			}
+			// Refill the buckets on the next redraw
+			bucketWidth = 0;
+		}
+		
+		/**
+		 * @return the time of the last measurement that was added to the buckets, or {@link Long#MIN_VALUE} if there
+		 *         is none
+		 */
+		long getLastTime()
+		{
+			return lastTime;
+		}
+		
+		/**
+		 * Adds the measurements that arrived since the last call to the buckets. If the width or the number of the
+		 * buckets changed, they are refilled with the measurements of the last <code>columns</code> buckets.
+		 */
+		void update(final long bucketWidth, final int columns)
+		{
+			final CompressedSeries series = connection.getSeries();
+			if (bucketWidth != this.bucketWidth || columns != buckets.length)
+			{
+				this.bucketWidth = bucketWidth;
+				if (columns != buckets.length)
+				{
+					buckets = new long[columns];
+					min = new double[columns];
+					max = new double[columns];
+					first = new double[columns];
+					last = new double[columns];
+				}
+				Arrays.fill(buckets, Long.MIN_VALUE);
+				lastTime = Long.MIN_VALUE;
+				
+				final long end = series.getLastTime();
+				final long start = end == Long.MIN_VALUE ? end : (Math.floorDiv(end, bucketWidth) - columns + 1)
+						* bucketWidth;
+				add(series.query(Math.max(start, clearedBefore), Long.MAX_VALUE));
+			}
+			else if (series.getEndIndex() > nextIndex)
+			{
+				add(series.readFrom(nextIndex));
+			}
+		}
+		
+		private void add(final CompressedSeries.Cursor cursor)
+		{
+			while (cursor.next())
+			{
+				final long bucket = Math.floorDiv(cursor.getTime(), bucketWidth);
+				final double value = cursor.getValue();
+				if (cursor.isBlockStart() && Math.floorDiv(cursor.getBlockLastTime(), bucketWidth) == bucket)
+				{
+					add(bucket, cursor.getBlockMin(), cursor.getBlockMax(), value, cursor.getBlockLastValue());
+					lastTime = cursor.getBlockLastTime();
+					cursor.skipBlock();
+				}
+				else
+				{
+					add(bucket, value, value, value, value);
+					lastTime = cursor.getTime();
+				}
+			}
+			nextIndex = cursor.getEndIndex();
+		}
+		
+		private void add(final long bucket, final double min, final double max, final double first, final double last)
+		{
+			final int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+			if (buckets[slot] != bucket)
+			{
+				// The slot held a bucket that is no longer part of the window
+				buckets[slot] = bucket;
+				this.min[slot] = min;
+				this.max[slot] = max;
+				this.first[slot] = first;
+			}
+			else
+			{
+				this.min[slot] = Math.min(this.min[slot], min);
+				this.max[slot] = Math.max(this.max[slot], max);
+			}
+			this.last[slot] = last;
+		}
+		
+		/**
+		 * Copies the buckets of the <code>columns</code> columns that end with the given bucket. Columns without a
+		 * measurement are set to NaN.
+		 *
+		 * @return the number of columns with measurements
+		 */
+		int getColumns(final long lastBucket, final int columns, final double[] min, final double[] max,
+				final double[] first, final double[] last)
+		{
+			int used = 0;
+			for (int c = 0; c < columns; c++)
+			{
+				final long bucket = lastBucket - columns + 1 + c;
+				final int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+				if (buckets[slot] == bucket)
+				{
+					min[c] = this.min[slot];
+					max[c] = this.max[slot];
+					first[c] = this.first[slot];
+					last[c] = this.last[slot];
+					used++;
+				}
+				else
+				{
+					min[c] = Double.NaN;
+				}
+			}
+			return used;
+		}
+	}
+}
@@ -5,8 +5,14 @@
 
 package com.mtreader;
 
+import java.util.Arrays;
+
 public class MTReaderExec {
     public static void main(String[] args) {
-        MTReader.main(args);
+        if (args.length > 0 && args[0].equals("--headless")) {
+            HeadlessRecorder.main(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            MTReader.main(args);
+        }
     }
 }
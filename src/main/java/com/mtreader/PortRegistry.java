@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import gnu.io.CommPortIdentifier;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the list of serial ports up to date on a background thread, so that it's available without enumerating the
+ * ports, which can take a while on hosts with many ttys.
+ * <p>
+ * The ports are enumerated once when the registry is started. If there is a <code>/dev</code> directory, it is then
+ * watched: a port whose device file is deleted is removed right away, and when a device file that looks like a
+ * serial port is created, the ports are enumerated again after {@link Constants#portSettleDelay}. Listeners are
+ * notified whenever the list changes.
+ *
+ * @author Felix Kirchmann
+ */
+public class PortRegistry
+{
+	public static interface Listener
+	{
+		/**
+		 * Called on the thread of the registry whenever the list of ports changed.
+		 */
+		public void portsChanged(String[] ports);
+	}
+	
+	private static final Path						deviceDirectory	= Paths.get("/dev");
+	
+	private static final List<Listener>				listeners		= new CopyOnWriteArrayList<>();
+	private static volatile String[]				ports			= new String[0];
+	private static Thread							thread			= null;
+	
+	/**
+	 * Starts enumerating and watching the ports, unless that was already done.
+	 */
+	public static synchronized void start()
+	{
+		if (thread != null) { return; }
+		thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				update(enumerate());
+				watch();
+			}
+		});
+		thread.setName("[Ports] Registry");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+	
+	/**
+	 * @return the names of the serial ports, empty until the first enumeration is done
+	 */
+	public static String[] getPorts()
+	{
+		return ports.clone();
+	}
+	
+	public static void addListener(final Listener listener)
+	{
+		listeners.add(listener);
+	}
+	
+	public static void removeListener(final Listener listener)
+	{
+		listeners.remove(listener);
+	}
+	
+	private static String[] enumerate()
+	{
+		@SuppressWarnings("unchecked")
+		final Enumeration<CommPortIdentifier> identifiers = CommPortIdentifier.getPortIdentifiers();
+		
+		final List<String> portNames = new ArrayList<>();
+		while (identifiers.hasMoreElements())
+		{
+			final CommPortIdentifier port = identifiers.nextElement();
+			if (port.getPortType() == CommPortIdentifier.PORT_SERIAL)
+			{
+				portNames.add(port.getName());
+			}
+		}
+		final String[] names = portNames.toArray(new String[0]);
+		Arrays.sort(names);
+		return names;
+	}
+	
+	private static void update(final String[] ports)
+	{
+		if (Arrays.equals(ports, PortRegistry.ports)) { return; }
+		PortRegistry.ports = ports;
+		for (final Listener listener : listeners)
+		{
+			listener.portsChanged(ports.clone());
+		}
+	}
+	
+	private static void watch()
+	{
+		if (!Files.isDirectory(deviceDirectory)) { return; }
+		try (WatchService watcher = FileSystems.getDefault().newWatchService())
+		{
+			deviceDirectory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE);
+			while (true)
+			{
+				WatchKey key = watcher.take();
+				boolean created = false;
+				final List<String> deleted = new ArrayList<>();
+				while (key != null)
+				{
+					for (final WatchEvent<?> event : key.pollEvents())
+					{
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+						{
+							created = true;
+						}
+						else if (isSerialPort(event.context().toString()))
+						{
+							if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+							{
+								created = true;
+							}
+							else
+							{
+								deleted.add(deviceDirectory.resolve(event.context().toString()).toString());
+							}
+						}
+					}
+					key.reset();
+					// A device is often made up of several files that appear one after the other, wait for the rest
+					key = created ? watcher.poll(Constants.portSettleDelay, TimeUnit.MILLISECONDS) : watcher.poll();
+				}
+				
+				if (created)
+				{
+					update(enumerate());
+				}
+				else if (!deleted.isEmpty())
+				{
+					final List<String> remaining = new ArrayList<>(Arrays.asList(ports));
+					remaining.removeAll(deleted);
+					update(remaining.toArray(new String[0]));
+				}
+			}
+		}
+		catch (final IOException e)
+		{
+			System.err.println("Unable to watch " + deviceDirectory + " for new ports: " + Func.toString(e));
+		}
+		catch (final InterruptedException | ClosedWatchServiceException e)
+		{
+			// Stop watching
+		}
+	}
+	
+	// The device files of serial ports on Linux, e.g. ttyS0, ttyUSB0, ttyACM0 and rfcomm0
+	private static boolean isSerialPort(final String name)
+	{
+		return name.startsWith("tty") || name.startsWith("rfcomm");
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.IOException;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+
+/**
+ * Shows the progress of a task with a button to cancel it. The window closes itself when the task is done; closing
+ * it earlier cancels the task.
+ *
+ * @author Felix Kirchmann
+ */
+@SuppressWarnings("unused")
+public class ProgressWindow
+{
+	/**
+	 * Starts the task on a new background thread and shows its progress.
+	 */
+	public static void run(final Task<?> task)
+	{
+		final Stage stage = new Stage();
+		final FXMLLoader loader = new FXMLLoader();
+		loader.setLocation(ConnectDialog.class.getResource("/"));
+		try
+		{
+			loader.load(ConnectDialog.class.getResourceAsStream("/ProgressWindow.fxml"));
+		}
+		catch (final IOException e)
+		{
+			MTReader.exitError(e);
+		}
+		final Parent root = (Parent) loader.getRoot();
+		
+		stage.titleProperty().bind(task.titleProperty());
+		stage.setScene(new Scene(root, Constants.progressWindowSize[0], Constants.progressWindowSize[1]));
+		final ProgressWindow window = ((ProgressWindow) loader.getController());
+		window.stage = stage;
+		window.task = task;
+		window.message.textProperty().bind(task.messageProperty());
+		window.progress.progressProperty().bind(task.progressProperty());
+		
+		task.stateProperty().addListener(new ChangeListener<Worker.State>()
+		{
+			@Override
+			public void changed(final ObservableValue<? extends Worker.State> observable,
+					final Worker.State oldValue, final Worker.State newValue)
+			{
+				if (task.isDone())
+				{
+					stage.hide();
+				}
+			}
+		});
+		stage.setOnHidden(new EventHandler<WindowEvent>()
+		{
+			@Override
+			public void handle(final WindowEvent event)
+			{
+				task.cancel();
+			}
+		});
+		
+		final Thread thread = new Thread(task, task.getTitle());
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		stage.show();
+		thread.start();
+	}
+	
+	private Stage		stage;
+	private Task<?>		task;
+	
+	@FXML
+	private Label		message;
+	
+	@FXML
+	private ProgressBar	progress;
+	
+	@FXML
+	private void onCancel(final Event event)
+	{
+		task.cancel();
+		stage.hide();
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.mtreader.api.DataDevice;
+
+/**
+ * A device that replays a {@link CaptureFile}, so that a plugin can be run without the hardware, e.g. to reproduce a
+ * problem or to measure the throughput of a plugin. The capture is memory-mapped and its bytes are copied directly
+ * into the read buffers of the plugin.
+ * <p>
+ * The bytes are delivered with the timing of the capture, scaled by the playback speed, starting with the first read.
+ * At {@link #maximumSpeed}, reads never wait, and each read is filled with as many bytes as fit. Writes are ignored,
+ * so a polled device is replayed as it responded to the polls during the capture.
+ * <p>
+ * At the end of the capture, the device either starts over or stops sending, like a device that was switched off: a
+ * read then blocks until the thread is interrupted, e.g. because the connection is closed. A capture whose last chunk
+ * is incomplete, e.g. because the recording was killed, ends with the last complete chunk.
+ *
+ * @author Felix Kirchmann
+ */
+public class ReplayDataDevice extends DataDevice
+{
+	public static final double	maximumSpeed	= Double.POSITIVE_INFINITY;
+	
+	private final String		name;
+	private final ByteBuffer	capture;
+	private final double		speed;
+	private final boolean		loop;
+	
+	// The position of the next byte in the capture, and the number of bytes left in its chunk
+	private int					position		= CaptureFile.headerSize, remaining = 0;
+	// The end of the last complete chunk, the limit of the capture until an incomplete chunk is found
+	private int					end;
+	// The time of the last chunk, and the time in the capture at which the current pass started
+	private long				lastTime		= 0, passStart = 0;
+	// The System.nanoTime() at which the replay started, 0 until the first read
+	private long				start			= 0;
+	private volatile boolean	finished		= false;
+	
+	/**
+	 * @param speed
+	 *            the playback speed, e.g. 1 for the original timing, 10 to play 10 times as fast, or
+	 *            {@link #maximumSpeed}
+	 * @param loop
+	 *            whether to start over at the end of the capture
+	 */
+	public ReplayDataDevice(final Path file, final double speed, final boolean loop) throws IOException
+	{
+		if (!(speed > 0)) { throw new IllegalArgumentException("The speed must be positive"); }
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			if (channel.size() > Integer.MAX_VALUE) { throw new IOException(file + " is too large to be replayed"); }
+			capture = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (capture.limit() < CaptureFile.headerSize || capture.getInt(0) != CaptureFile.magic) { throw new IOException(
+				file + " is not a capture file"); }
+		if (capture.getInt(4) != CaptureFile.version) { throw new IOException("Unsupported capture version: "
+				+ capture.getInt(4)); }
+		this.end = capture.limit();
+		this.name = file.getFileName().toString();
+		this.speed = speed;
+		this.loop = loop;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * @return the start of the capture, in nanoseconds since the epoch
+	 */
+	public long getCaptureStart()
+	{
+		return capture.getLong(8);
+	}
+	
+	/**
+	 * @return whether all bytes of the capture were read, always false if the device loops
+	 */
+	public boolean isFinished()
+	{
+		return finished;
+	}
+	
+	@Override
+	public byte[] read(final int numBytes) throws IOException
+	{
+		final ByteBuffer read = ByteBuffer.allocate(numBytes);
+		while (read.hasRemaining())
+		{
+			read(read);
+		}
+		return read.array();
+	}
+	
+	@Override
+	public int read(final ByteBuffer dst) throws IOException
+	{
+		return transfer(dst, true);
+	}
+	
+	@Override
+	public int readAvailable(final ByteBuffer dst) throws IOException
+	{
+		return transfer(dst, false);
+	}
+	
+	// Copies the bytes that are due into dst. If block is set, waits until at least one byte is due.
+	private int transfer(final ByteBuffer dst, final boolean block) throws IOException
+	{
+		if (start == 0)
+		{
+			start = System.nanoTime();
+		}
+		int read = 0;
+		while (dst.hasRemaining())
+		{
+			if (remaining == 0 && !nextChunk(block && read == 0))
+			{
+				break;
+			}
+			final int length = Math.min(remaining, dst.remaining());
+			dst.put(dst.position(), capture, position, length);
+			dst.position(dst.position() + length);
+			position += length;
+			remaining -= length;
+			read += length;
+		}
+		return read;
+	}
+	
+	// Moves on to the next chunk if it is due, or waits for it if block is set
+	private boolean nextChunk(final boolean block) throws IOException
+	{
+		if (position != end && !isComplete(position))
+		{
+			end = position;
+		}
+		if (position == end)
+		{
+			if (!loop || position == CaptureFile.headerSize)
+			{
+				finished = true;
+				if (!block) { return false; }
+				sleep(Long.MAX_VALUE);
+			}
+			// The next pass starts when the last chunk of this one was received
+			passStart += lastTime;
+			position = CaptureFile.headerSize;
+		}
+		
+		final long time = capture.getLong(position);
+		if (speed != maximumSpeed)
+		{
+			final long wait = start + (long) ((passStart + time) / speed) - System.nanoTime();
+			if (wait > 0)
+			{
+				if (!block) { return false; }
+				sleep(wait);
+			}
+		}
+		lastTime = time;
+		remaining = capture.getInt(position + 8);
+		position += CaptureFile.chunkHeaderSize;
+		return true;
+	}
+	
+	// Whether the chunk at the given position lies within the capture
+	private boolean isComplete(final int chunk)
+	{
+		if (capture.limit() - chunk < CaptureFile.chunkHeaderSize) { return false; }
+		final int length = capture.getInt(chunk + 8);
+		return length >= 0 && length <= capture.limit() - chunk - CaptureFile.chunkHeaderSize;
+	}
+	
+	private static void sleep(final long nanos) throws InterruptedIOException
+	{
+		try
+		{
+			Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+	
+	@Override
+	public void write(final byte[] bytes)
+	{
+		// The capture contains the responses to the writes that were made while capturing
+	}
+}
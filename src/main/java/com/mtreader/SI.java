@@ -6,7 +6,9 @@
 package com.mtreader;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 
@@ -14,33 +16,48 @@ import java.math.RoundingMode;
  */
 public abstract class SI
 {
+	/**
+	 * Converts a number between two prefixes. Since all prefixes are powers of ten, this only shifts the decimal point
+	 * and is always exact.
+	 */
 	public static BigDecimal convert(final BigDecimal number, final SI.Prefix from, final SI.Prefix to)
 	{
 		if (number == null) { throw new NullPointerException(); }
 		if (from == to) { return number; }
-		return number.multiply(from.factorBD).divide(to.factorBD, RoundingMode.HALF_UP).stripTrailingZeros();
+		return number.scaleByPowerOfTen(from.exponent - to.exponent);
+	}
+	
+	/**
+	 * Returns the scale that a fixed-point number with the given scale has after converting it between two prefixes.
+	 * The mantissa stays the same.
+	 */
+	public static int convertScale(final int scale, final SI.Prefix from, final SI.Prefix to)
+	{
+		return scale - (from.exponent - to.exponent);
 	}
 	
 	public static enum Prefix
 	{
 		// @formatter:off
 		
-		giga  (1e+9, "G"     ),
-		mega  (1e+6, "M"     ),
-		kilo  (1e+3, "k"     ),
-		none  (1e+0, ""      ),
-		milli (1e-3, "m"     ),
-		micro (1e-6, "\u03bc"), // lowercase greek mu
-		nano  (1e-9, "n"     );
+		giga  (+9, "G"     ),
+		mega  (+6, "M"     ),
+		kilo  (+3, "k"     ),
+		none  ( 0, ""      ),
+		milli (-3, "m"     ),
+		micro (-6, "\u03bc"), // lowercase greek mu
+		nano  (-9, "n"     );
 		
+		public final int		exponent;
 		public final double		factor;
 		public final BigDecimal	factorBD;
 		public final String		symbol;
 		
-		Prefix(final double factor, final String symbol)
+		Prefix(final int exponent, final String symbol)
 		{
-			this.factor   = factor;
-			this.factorBD = BigDecimal.valueOf(factor);
+			this.exponent = exponent;
+			this.factorBD = BigDecimal.ONE.scaleByPowerOfTen(exponent);
+			this.factor   = factorBD.doubleValue();
 			this.symbol   = symbol;
 		}
 		
@@ -56,7 +73,118 @@ public abstract class SI
 				return this.name() + " (" + this.symbol + ")";
 			}
 		}
-
+		
 		// @formatter:on
 	}
+	
+	/**
+	 * The physical quantity that a unit measures.
+	 */
+	public static enum Dimension
+	{
+		none, voltage, current, resistance, capacitance, frequency, temperature, count, unknown
+	}
+	
+	/**
+	 * A unit of measurement. Units are interned, so they can be compared by identity and referred to by their
+	 * {@link #ordinal}, which is small enough to be stored in a byte. The only exception are the units that
+	 * {@link #lookup(String)} creates for symbols read from files.
+	 * <p>
+	 * Each unit is the base unit of its dimension, i.e. the canonical form of a measurement is its value in its unit
+	 * without an SI prefix. Units that are registered at runtime via {@link #of(String)} have an
+	 * {@link Dimension#unknown unknown} dimension.
+	 * <p>
+	 * There can be at most 256 units, as they are never removed. Once that many are registered, {@link #of(String)}
+	 * returns {@link #unknown} for new symbols, so input that isn't trusted, e.g. bytes received from a device, should
+	 * be mapped to the units it can contain rather than passed to {@link #of(String)}.
+	 */
+	public static final class Unit
+	{
+		private static final AtomicReferenceArray<Unit>	byOrdinal	= new AtomicReferenceArray<>(256);
+		private static final Map<String, Unit>			bySymbol	= new HashMap<>();
+		private static int								registered	= 0;
+		
+		// @formatter:off
+		
+		public static final Unit none    = new Unit(""      , Dimension.none       );
+		public static final Unit volt    = new Unit("V"     , Dimension.voltage    );
+		public static final Unit ampere  = new Unit("A"     , Dimension.current    );
+		public static final Unit ohm     = new Unit("\u03a9", Dimension.resistance ); // uppercase Greek Omega
+		public static final Unit farad   = new Unit("F"     , Dimension.capacitance);
+		public static final Unit hertz   = new Unit("Hz"    , Dimension.frequency  );
+		public static final Unit celsius = new Unit("\u00B0C", Dimension.temperature);
+		public static final Unit count   = new Unit("#"     , Dimension.count      );
+		/** Stands in for units that can't be registered or recognized. */
+		public static final Unit unknown = new Unit("?"     , Dimension.unknown    );
+		
+		// @formatter:on
+		
+		public final String								symbol;
+		public final Dimension							dimension;
+		/** The ordinal of the unit, or -1 if it is not registered, see {@link #lookup(String)}. */
+		public final int								ordinal;
+		
+		private Unit(final String symbol, final Dimension dimension)
+		{
+			if (registered == byOrdinal.length()) { throw new IllegalStateException("Too many units"); }
+			this.symbol = symbol;
+			this.dimension = dimension;
+			this.ordinal = registered++;
+			byOrdinal.set(ordinal, this);
+			bySymbol.put(symbol, this);
+		}
+		
+		// Creates a unit that is not registered
+		private Unit(final String symbol)
+		{
+			this.symbol = symbol;
+			this.dimension = Dimension.unknown;
+			this.ordinal = -1;
+		}
+		
+		/**
+		 * Returns the unit with the given symbol, registering it if it is not known yet.
+		 *
+		 * @return {@link #unknown} if the symbol is not known and no more units can be registered
+		 */
+		public static Unit of(final String symbol)
+		{
+			if (symbol == null) { throw new NullPointerException(); }
+			synchronized (bySymbol)
+			{
+				final Unit unit = bySymbol.get(symbol);
+				if (unit != null) { return unit; }
+				return registered < byOrdinal.length() ? new Unit(symbol, Dimension.unknown) : unknown;
+			}
+		}
+		
+		/**
+		 * Returns the unit with the given symbol. Unlike {@link #of(String)}, this never registers a unit, so it is
+		 * meant for symbols read from files: if the symbol is not known, a new unit is returned that is not
+		 * registered. Such a unit has no ordinal, can't be used in a {@link com.mtreader.api.Measurement} and has to be
+		 * compared by its symbol.
+		 */
+		public static Unit lookup(final String symbol)
+		{
+			if (symbol == null) { throw new NullPointerException(); }
+			synchronized (bySymbol)
+			{
+				final Unit unit = bySymbol.get(symbol);
+				return unit != null ? unit : new Unit(symbol);
+			}
+		}
+		
+		public static Unit valueOf(final int ordinal)
+		{
+			final Unit unit = (ordinal >= 0 && ordinal < byOrdinal.length()) ? byOrdinal.get(ordinal) : null;
+			if (unit == null) { throw new IllegalArgumentException("Unknown unit: " + ordinal); }
+			return unit;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return symbol;
+		}
+	}
 }
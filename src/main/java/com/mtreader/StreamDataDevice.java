@@ -8,7 +8,9 @@ package com.mtreader;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import com.mtreader.api.DataDevice;
 
@@ -21,12 +23,29 @@ public class StreamDataDevice extends DataDevice
 	private final String		name;
 	private final InputStream	in;
 	private final OutputStream	out;
+	private final boolean		retryOnEnd;
+	
+	// Used by read(ByteBuffer) and readAvailable(ByteBuffer) for buffers that are not backed by an array
+	private final byte[]		buffer	= new byte[256];
+	
+	private volatile int		pollInterval	= 0;
 	
 	public StreamDataDevice(final InputStream in, final OutputStream out, final String name)
+	{
+		this(in, out, name, false);
+	}
+	
+	/**
+	 * @param retryOnEnd
+	 *            whether the stream returns -1 while no data has arrived yet instead of at its end, as the streams of
+	 *            RXTX serial ports may do. The reads then keep waiting for data and never report the end of the stream.
+	 */
+	public StreamDataDevice(final InputStream in, final OutputStream out, final String name, final boolean retryOnEnd)
 	{
 		this.in = in;
 		this.out = out;
 		this.name = name;
+		this.retryOnEnd = retryOnEnd;
 	}
 	
 	@Override
@@ -43,7 +62,7 @@ public class StreamDataDevice extends DataDevice
 		{
 			read = in.read();
 		}
-		while (read == 0xFFFFFFFF);
+		while (read == 0xFFFFFFFF && retryOnEnd);
 		return read;
 	}
 	
@@ -58,13 +77,96 @@ public class StreamDataDevice extends DataDevice
 		while (bytesReadTotal < numBytes)
 		{
 			bytesRead = in.read(read, bytesReadTotal, numBytes - bytesReadTotal);
-			if (bytesRead == -1) { throw new EOFException(); }
+			if (bytesRead == -1)
+			{
+				if (retryOnEnd)
+				{
+					continue;
+				}
+				throw new EOFException();
+			}
 			bytesReadTotal += bytesRead;
 		}
 		assert (bytesReadTotal == numBytes);
 		return read;
 	}
 	
+	/**
+	 * If set to a positive value, {@link #read(ByteBuffer)} doesn't block in the stream's read method, but checks for
+	 * available data in the given interval and sleeps in between. This is meant for virtual threads: a thread that is
+	 * blocked in a native read occupies its carrier thread, whereas a sleeping virtual thread doesn't. As the end of
+	 * the stream can't be told apart from a stream without data this way, it is only meant for streams that retry on
+	 * their end.
+	 */
+	public void setPollInterval(final int pollIntervalMillis)
+	{
+		this.pollInterval = pollIntervalMillis;
+	}
+	
+	@Override
+	public int read(final ByteBuffer dst) throws IOException
+	{
+		if (!dst.hasRemaining()) { return 0; }
+		
+		final int pollInterval = this.pollInterval;
+		if (pollInterval > 0)
+		{
+			int read;
+			while ((read = readAvailable(dst)) == 0)
+			{
+				try
+				{
+					Thread.sleep(pollInterval);
+				}
+				catch (final InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			}
+			return read;
+		}
+		
+		// Like read(), keep waiting while the port reports that there is no data yet
+		int read;
+		do
+		{
+			read = readInto(dst, dst.remaining());
+		}
+		while (read == 0 || read == -1 && retryOnEnd);
+		return read;
+	}
+	
+	@Override
+	public int readAvailable(final ByteBuffer dst) throws IOException
+	{
+		final int available = Math.min(in.available(), dst.remaining());
+		if (available <= 0) { return 0; }
+		return Math.max(readInto(dst, available), 0);
+	}
+	
+	private int readInto(final ByteBuffer dst, final int maxBytes) throws IOException
+	{
+		if (dst.hasArray())
+		{
+			final int read = in.read(dst.array(), dst.arrayOffset() + dst.position(), maxBytes);
+			if (read > 0)
+			{
+				dst.position(dst.position() + read);
+			}
+			return read;
+		}
+		else
+		{
+			final int read = in.read(buffer, 0, Math.min(maxBytes, buffer.length));
+			if (read > 0)
+			{
+				dst.put(buffer, 0, read);
+			}
+			return read;
+		}
+	}
+	
 	@Override
 	public void write(final byte[] bytes) throws IOException
 	{
@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.mtreader.api.DataReceiver;
+import com.mtreader.api.Measurement;
+
+/**
+ * An append-only store for the measurements of one connection. Measurements are written as fixed-width binary records
+ * to segment files in a directory, through memory-mapped buffers. When a segment is full, a new one is started.
+ * <p>
+ * Segment layout (little endian):
+ *
+ * <pre>
+ * Header (4096 bytes)
+ *   0  int   magic "MTSS"
+ *   4  int   format version (2)
+ *   8  int   record size (24)
+ *  16  long  number of records
+ *  24  long  timestamp of the first record
+ *  32  long  timestamp of the last record
+ *  64  int   number of units in the unit table
+ *  68        unit table, 32 bytes per unit: ordinal (1 byte), symbol length (1 byte), symbol (UTF-8, 30 bytes)
+ * Records (24 bytes each)
+ *   0  long  timestamp, nanoseconds since the epoch
+ *   8  long  mantissa
+ *  16  int   scale
+ *  20  byte  unit ordinal, see the unit table. These ordinals are local to the segment, as the ordinals of
+ *            {@link SI.Unit} depend on the order in which the units were registered by the process. Units that
+ *            the reading process hasn't registered are read without registering them, see
+ *            {@link SI.Unit#lookup(String)}.
+ *  21  byte  prefix ordinal
+ *  22  short reserved
+ * </pre>
+ *
+ * Timestamps are monotonic within a store, which allows time range queries to use binary search. Queries return a
+ * {@link Cursor}, which reads the records directly from the mapped segments.
+ *
+ * @author Felix Kirchmann
+ */
+public class TimeSeriesStore implements DataReceiver, Closeable
+{
+	public static final int				headerSize			= 4096;
+	public static final int				recordSize			= 24;
+	public static final long			defaultSegmentSize	= 64L * 1024 * 1024;
+	// Segments are mapped as a single buffer
+	public static final long			maxSegmentSize		= Integer.MAX_VALUE;
+	
+	private static final int			magic				= 0x4D545353;			// "MTSS"
+	private static final int			version				= 2;
+	private static final int			countOffset			= 16;
+	private static final int			firstOffset			= 24;
+	private static final int			lastOffset			= 32;
+	private static final int			unitCountOffset		= 64;
+	private static final int			unitTableOffset		= 68;
+	private static final int			unitEntrySize		= 32;
+	private static final int			maxUnits			= (headerSize - unitTableOffset) / unitEntrySize;
+	private static final String			segmentSuffix		= ".seg";
+	
+	private static final SI.Prefix[]	prefixes			= SI.Prefix.values();
+	
+	private final Path					directory;
+	private final long					segmentSize;
+	private final List<Segment>			segments			= new ArrayList<>();
+	private Segment						current;
+	private boolean						closed				= false;
+	
+	// Maps System.nanoTime() to the wall clock
+	private final long					anchorEpochNanos	= System.currentTimeMillis() * 1000000L;
+	private final long					anchorNanoTime		= System.nanoTime();
+	private long						lastTimestamp		= Long.MIN_VALUE;
+	
+	public TimeSeriesStore(final Path directory) throws IOException
+	{
+		this(directory, defaultSegmentSize);
+	}
+	
+	/**
+	 * Opens the store in the given directory, creating it if necessary. Appends continue in the last existing segment.
+	 *
+	 * @param segmentSize
+	 *            the size of new segment files, at most {@link #maxSegmentSize}
+	 */
+	public TimeSeriesStore(final Path directory, final long segmentSize) throws IOException
+	{
+		if (segmentSize < headerSize + recordSize) { throw new IllegalArgumentException("Segment size too small"); }
+		if (segmentSize > maxSegmentSize) { throw new IllegalArgumentException("Segment size too large"); }
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		
+		Files.createDirectories(directory);
+		final File[] files = directory.toFile().listFiles();
+		if (files != null)
+		{
+			Arrays.sort(files);
+			for (final File file : files)
+			{
+				if (file.getName().endsWith(segmentSuffix))
+				{
+					segments.add(Segment.open(file.toPath()));
+				}
+			}
+		}
+		if (segments.isEmpty())
+		{
+			roll();
+		}
+		else
+		{
+			current = segments.get(segments.size() - 1);
+			lastTimestamp = current.getLastTimestamp();
+		}
+	}
+	
+	public Path getDirectory()
+	{
+		return directory;
+	}
+	
+	@Override
+	public void onData(final Measurement data)
+	{
+		try
+		{
+			append(data.getSequence() >= 0 ? data.getNanoTime() : System.nanoTime(), data);
+		}
+		catch (final IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Appends a measurement.
+	 *
+	 * @param nanoTime
+	 *            the time the measurement was taken, as returned by {@link System#nanoTime()}
+	 */
+	public synchronized void append(final long nanoTime, final Measurement data) throws IOException
+	{
+		if (closed) { throw new IOException("The store is closed"); }
+		
+		// Keep timestamps monotonic, even if the store was reopened after the wall clock was set back
+		final long timestamp = Math.max(anchorEpochNanos + (nanoTime - anchorNanoTime), lastTimestamp);
+		if (current.isFull())
+		{
+			roll();
+		}
+		current.append(timestamp, data);
+		lastTimestamp = timestamp;
+	}
+	
+	private void roll() throws IOException
+	{
+		if (current != null)
+		{
+			current.buffer.force();
+		}
+		final int index = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).index + 1;
+		current = Segment.create(directory.resolve(String.format("%08d", index) + segmentSuffix), index, segmentSize);
+		segments.add(current);
+	}
+	
+	/**
+	 * Returns a cursor over all records with timestamps in the range [from, to), in nanoseconds since the epoch. The
+	 * cursor only covers the records that exist when this method is called.
+	 */
+	public synchronized Cursor query(final long from, final long to)
+	{
+		final Segment[] segments = this.segments.toArray(new Segment[0]);
+		final long[] counts = new long[segments.length];
+		for (int i = 0; i < segments.length; i++)
+		{
+			counts[i] = segments[i].getCount();
+		}
+		return new Cursor(segments, counts, from, to);
+	}
+	
+	/**
+	 * Writes the records with timestamps in the range [from, to) as a {@link ColumnarFile} with the columns "Time"
+	 * and "Value". The values are written in their base unit, which doesn't change their precision.
+	 *
+	 * @param device
+	 *            the name of the device whose measurements are stored, may be empty
+	 * @return the number of records written
+	 */
+	public long export(final long from, final long to, final String device, final WritableByteChannel out)
+			throws IOException
+	{
+		final Map<String, String> metadata = ColumnarFile.defaultMetadata();
+		metadata.put("source", directory.toString());
+		final ColumnarFile.Writer writer = new ColumnarFile.Writer(out, metadata, ColumnarFile.Column
+				.timestamps("Time"), ColumnarFile.Column.decimals("Value", device, SI.Prefix.none));
+		
+		final Cursor cursor = query(from, to);
+		long count = 0;
+		while (cursor.next())
+		{
+			writer.setTimestamp(0, cursor.getTimestamp());
+			// mantissa * 10^-scale * 10^exponent = mantissa * 10^-(scale - exponent)
+			writer.setValue(1, cursor.getMantissa(), cursor.getScale() - cursor.getPrefix().exponent, cursor.getUnit());
+			writer.endRow();
+			count++;
+		}
+		writer.finish();
+		return count;
+	}
+	
+	public synchronized long getCount()
+	{
+		long count = 0;
+		for (final Segment segment : segments)
+		{
+			count += segment.getCount();
+		}
+		return count;
+	}
+	
+	@Override
+	public synchronized void close()
+	{
+		if (!closed)
+		{
+			closed = true;
+			current.buffer.force();
+		}
+	}
+	
+	/**
+	 * Iterates over the records of a query. Call {@link #next()} before reading the first record. The getters read
+	 * directly from the mapped segment.
+	 */
+	public static final class Cursor
+	{
+		private final Segment[]	segments;
+		private final long[]	counts;
+		private final long		from, to;
+		private int				segment		= -1;
+		private long			record		= -1, end = 0;
+		private int				position;
+		
+		private Cursor(final Segment[] segments, final long[] counts, final long from, final long to)
+		{
+			this.segments = segments;
+			this.counts = counts;
+			this.from = from;
+			this.to = to;
+		}
+		
+		public boolean next()
+		{
+			while (++record >= end)
+			{
+				if (++segment >= segments.length) { return false; }
+				final Segment s = segments[segment];
+				final long count = counts[segment];
+				if (count == 0 || s.getTimestamp(0) >= to || s.getTimestamp(count - 1) < from)
+				{
+					record = end = 0;
+					continue;
+				}
+				record = s.search(from, count);
+				end = s.search(to, count);
+				record--;
+			}
+			position = headerSize + (int) (record * recordSize);
+			return true;
+		}
+		
+		public long getTimestamp()
+		{
+			return segments[segment].buffer.getLong(position);
+		}
+		
+		public long getMantissa()
+		{
+			return segments[segment].buffer.getLong(position + 8);
+		}
+		
+		public int getScale()
+		{
+			return segments[segment].buffer.getInt(position + 16);
+		}
+		
+		/**
+		 * @return the unit of the record, which may not be registered, see {@link SI.Unit#lookup(String)}
+		 */
+		public SI.Unit getUnit()
+		{
+			return segments[segment].units[segments[segment].buffer.get(position + 20) & 0xFF];
+		}
+		
+		public SI.Prefix getPrefix()
+		{
+			return prefixes[segments[segment].buffer.get(position + 21)];
+		}
+		
+		/**
+		 * @throws IllegalArgumentException
+		 *             if the unit of the record is not registered in this process, see {@link #getUnit()}
+		 */
+		public Measurement toMeasurement()
+		{
+			return new Measurement(getMantissa(), getScale(), getUnit(), getPrefix());
+		}
+	}
+	
+	private static final class Segment
+	{
+		final int				index;
+		final MappedByteBuffer	buffer;
+		final long				capacity;
+		
+		// Translates the unit ordinals of this segment to units, and the ordinals of the units to those of this segment
+		final SI.Unit[]			units		= new SI.Unit[256];
+		private final short[]	ordinals	= new short[256];
+		
+		private Segment(final int index, final MappedByteBuffer buffer)
+		{
+			this.index = index;
+			this.buffer = buffer;
+			this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+			this.capacity = (buffer.capacity() - headerSize) / recordSize;
+			Arrays.fill(ordinals, (short) -1);
+		}
+		
+		static Segment create(final Path file, final int index, final long size) throws IOException
+		{
+			final Segment segment = new Segment(index, map(file, size));
+			segment.buffer.putInt(0, magic);
+			segment.buffer.putInt(4, version);
+			segment.buffer.putInt(8, recordSize);
+			return segment;
+		}
+		
+		static Segment open(final Path file) throws IOException
+		{
+			final String name = file.getFileName().toString();
+			final int index = Integer.parseInt(name.substring(0, name.length() - segmentSuffix.length()));
+			final long size = Files.size(file);
+			if (size > maxSegmentSize) { throw new IOException("Segment file too large: " + file); }
+			final Segment segment = new Segment(index, map(file, size));
+			if (segment.buffer.getInt(0) != magic || segment.buffer.getInt(4) != version
+					|| segment.buffer.getInt(8) != recordSize) { throw new IOException("Not a segment file: " + file); }
+			
+			final int unitCount = segment.buffer.getInt(unitCountOffset);
+			if (unitCount < 0 || unitCount > maxUnits) { throw new IOException("Corrupt unit table: " + file); }
+			for (int i = 0; i < unitCount; i++)
+			{
+				final int entry = unitTableOffset + i * unitEntrySize;
+				final int ordinal = segment.buffer.get(entry) & 0xFF;
+				final int length = segment.buffer.get(entry + 1) & 0xFF;
+				if (length > unitEntrySize - 2 || segment.units[ordinal] != null) { throw new IOException(
+						"Corrupt unit table: " + file); }
+				final byte[] symbol = new byte[length];
+				segment.buffer.get(entry + 2, symbol);
+				// Registering the units of a file would fill up the registry
+				final SI.Unit unit = SI.Unit.lookup(new String(symbol, Constants.charset));
+				segment.units[ordinal] = unit;
+				if (unit.ordinal >= 0)
+				{
+					segment.ordinals[unit.ordinal] = (short) ordinal;
+				}
+			}
+			return segment;
+		}
+		
+		private static MappedByteBuffer map(final Path file, final long size) throws IOException
+		{
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE))
+			{
+				// The mapping stays valid after the channel is closed
+				return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+		}
+		
+		long getCount()
+		{
+			return buffer.getLong(countOffset);
+		}
+		
+		long getLastTimestamp()
+		{
+			return buffer.getLong(lastOffset);
+		}
+		
+		long getTimestamp(final long record)
+		{
+			return buffer.getLong(headerSize + (int) (record * recordSize));
+		}
+		
+		boolean isFull()
+		{
+			return getCount() == capacity;
+		}
+		
+		// Returns the first record with a timestamp >= the given timestamp
+		long search(final long timestamp, final long count)
+		{
+			long low = 0, high = count;
+			while (low < high)
+			{
+				final long mid = (low + high) >>> 1;
+				if (getTimestamp(mid) < timestamp)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			return low;
+		}
+		
+		void append(final long timestamp, final Measurement data) throws IOException
+		{
+			final SI.Unit unit = data.getUnitType();
+			int ordinal = ordinals[unit.ordinal];
+			if (ordinal == -1)
+			{
+				ordinal = addUnit(unit);
+			}
+			
+			final long count = getCount();
+			final int position = headerSize + (int) (count * recordSize);
+			buffer.putLong(position, timestamp);
+			buffer.putLong(position + 8, data.getMantissa());
+			buffer.putInt(position + 16, data.getScale());
+			buffer.put(position + 20, (byte) ordinal);
+			buffer.put(position + 21, (byte) data.getPrefix().ordinal());
+			
+			if (count == 0)
+			{
+				buffer.putLong(firstOffset, timestamp);
+			}
+			buffer.putLong(lastOffset, timestamp);
+			buffer.putLong(countOffset, count + 1);
+		}
+		
+		// Adds a unit to the unit table if necessary and returns its ordinal in this segment
+		private int addUnit(final SI.Unit unit) throws IOException
+		{
+			// The unit may have been read from the table before the process registered it
+			for (int ordinal = 0; ordinal < units.length; ordinal++)
+			{
+				if (units[ordinal] != null && units[ordinal].symbol.equals(unit.symbol))
+				{
+					units[ordinal] = unit;
+					ordinals[unit.ordinal] = (short) ordinal;
+					return ordinal;
+				}
+			}
+			
+			final int unitCount = buffer.getInt(unitCountOffset);
+			final byte[] symbol = unit.symbol.getBytes(Constants.charset);
+			if (unitCount == maxUnits || symbol.length > unitEntrySize - 2) { throw new IOException(
+					"Unable to store unit " + unit); }
+			int ordinal = 0;
+			while (units[ordinal] != null)
+			{
+				ordinal++;
+			}
+			
+			final int entry = unitTableOffset + unitCount * unitEntrySize;
+			buffer.put(entry, (byte) ordinal);
+			buffer.put(entry + 1, (byte) symbol.length);
+			buffer.put(entry + 2, symbol);
+			buffer.putInt(unitCountOffset, unitCount + 1);
+			units[ordinal] = unit;
+			ordinals[unit.ordinal] = (short) ordinal;
+			return ordinal;
+		}
+	}
+}
@@ -6,6 +6,7 @@
 package com.mtreader.api;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -30,5 +31,32 @@ public abstract class DataDevice
 	
 	public abstract byte[] read(int numBytes) throws IOException;
 	
+	/**
+	 * Reads as many bytes as are available into <code>dst</code>, blocking until at least one byte has been read.
+	 * 
+	 * @return the number of bytes read, 0 if <code>dst</code> has no space remaining, or -1 at the end of the stream.
+	 *         Devices without an end, such as serial ports, never return -1.
+	 */
+	public int read(final ByteBuffer dst) throws IOException
+	{
+		if (!dst.hasRemaining()) { return 0; }
+		
+		final int read = read();
+		if (read == -1) { return -1; }
+		dst.put((byte) read);
+		final int available = readAvailable(dst);
+		return available > 0 ? available + 1 : 1;
+	}
+	
+	/**
+	 * Reads the bytes that can be read without blocking into <code>dst</code>.
+	 * 
+	 * @return the number of bytes read, which may be 0
+	 */
+	public int readAvailable(final ByteBuffer dst) throws IOException
+	{
+		return 0;
+	}
+	
 	public abstract void write(byte[] bytes) throws IOException;
 }
@@ -6,7 +6,11 @@
 package com.mtreader.api;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 
@@ -30,6 +34,7 @@ public abstract class DataSource
 	{
 		if (started.compareAndSet(false, true))
 		{
+			epochOffset = System.currentTimeMillis() * 1000000L - System.nanoTime();
 			onStart(device);
 		}
 	}
@@ -41,35 +46,221 @@ public abstract class DataSource
 		if (started.get() == true && stopped.compareAndSet(false, true))
 		{
 			onStop();
+			synchronized (polls)
+			{
+				for (final PollScheduler.Registration poll : polls)
+				{
+					poll.cancel();
+				}
+				polls.clear();
+			}
+			for (final DataReceiver receiver : receivers)
+			{
+				if (receiver instanceof QueuedReceiver)
+				{
+					((QueuedReceiver) receiver).stop();
+				}
+			}
 		}
 	}
 	
 	// -------------------
 	
-	private final ArrayList<DataReceiver>	receivers		= new ArrayList<>();
-	private final Object					receiversSync	= new Object();
+	private static final ThreadFactory	defaultThreadFactory	= new ThreadFactory()
+																{
+																	@Override
+																	public Thread newThread(final Runnable task)
+																	{
+																		final Thread thread = new Thread(task);
+																		thread.setDaemon(true);
+																		thread.setPriority(Thread.MIN_PRIORITY);
+																		return thread;
+																	}
+																};
+	
+	private volatile ThreadFactory		threadFactory			= defaultThreadFactory;
+	
+	/**
+	 * Sets the factory for all threads that belong to this source, i.e. the threads that plugins start via
+	 * {@link #startThread(String, Runnable)} and the delivery threads of queued receivers.
+	 */
+	public void setThreadFactory(final ThreadFactory threadFactory)
+	{
+		if (threadFactory == null) { throw new NullPointerException(); }
+		this.threadFactory = threadFactory;
+	}
+	
+	public ThreadFactory getThreadFactory()
+	{
+		return threadFactory;
+	}
+	
+	/**
+	 * Starts a thread for this source. Plugins should use this instead of creating threads themselves, so that the
+	 * thread can be shut down along with the connection.
+	 */
+	protected final Thread startThread(final String name, final Runnable task)
+	{
+		final Thread thread = threadFactory.newThread(task);
+		thread.setName(name);
+		thread.start();
+		return thread;
+	}
+	
+	// -------------------
+	
+	private final List<PollScheduler.Registration>	polls		= new ArrayList<>();
+	private String									pollGroup	= PollScheduler.defaultGroup;
+	
+	/**
+	 * Polls the device in the given interval using the shared {@link PollScheduler}, until this source is stopped or
+	 * a poll fails. The poller runs on the scheduler thread, see {@link PollScheduler.Poller#poll()}.
+	 * 
+	 * @return the registration of the poller, which is already cancelled if this source was stopped
+	 */
+	protected final PollScheduler.Registration schedulePoll(final long intervalMillis, final PollScheduler.Poller poller)
+	{
+		synchronized (polls)
+		{
+			final PollScheduler.Registration poll = PollScheduler.getDefault().register(pollGroup, intervalMillis,
+					poller);
+			// stop() sets stopped before it cancels the polls, so a poll registered after that is cancelled here
+			if (stopped.get())
+			{
+				poll.cancel();
+			}
+			else
+			{
+				polls.add(poll);
+			}
+			return poll;
+		}
+	}
+	
+	/**
+	 * Sets the poll group of this source. Polled sources in the same group (and with the same poll interval) are
+	 * polled in the same tick.
+	 */
+	public void setPollGroup(final String pollGroup)
+	{
+		if (pollGroup == null) { throw new NullPointerException(); }
+		
+		synchronized (polls)
+		{
+			this.pollGroup = pollGroup;
+			for (final PollScheduler.Registration poll : polls)
+			{
+				poll.setGroup(pollGroup);
+			}
+		}
+	}
+	
+	public String getPollGroup()
+	{
+		synchronized (polls)
+		{
+			return pollGroup;
+		}
+	}
+	
+	// -------------------
 	
+	private volatile boolean	normalizing	= false;
+	
+	/**
+	 * If enabled, every measurement is converted to its base unit (see {@link Measurement#normalize()}) once, before
+	 * it is passed to the receivers. The receivers then no longer have to convert when the device switches ranges.
+	 */
+	public void setNormalizing(final boolean normalizing)
+	{
+		this.normalizing = normalizing;
+	}
+	
+	public boolean isNormalizing()
+	{
+		return normalizing;
+	}
+	
+	// -------------------
+	
+	// Copy-on-write, so that measurements can be dispatched without locking
+	private volatile DataReceiver[]	receivers		= new DataReceiver[0];
+	private final Object			receiversSync	= new Object();
+	
+	private final AtomicLong		sequence		= new AtomicLong();
+	// Wall clock time minus System.nanoTime(), taken when the source is started
+	private volatile long			epochOffset		= System.currentTimeMillis() * 1000000L - System.nanoTime();
+	
+	/**
+	 * Passes a measurement to the receivers, stamped with the current time. Prefer
+	 * {@link #updateData(Measurement, long)} with the time at which the frame was received.
+	 */
 	protected final void updateData(final Measurement measurement)
 	{
+		updateData(measurement, System.nanoTime());
+	}
+	
+	/**
+	 * Passes a measurement to the receivers.
+	 * 
+	 * @param nanoTime
+	 *            the {@link System#nanoTime()} at which the frame containing the measurement was received
+	 */
+	protected final void updateData(final Measurement measurement, final long nanoTime)
+	{
+		final Measurement data = normalizing ? measurement.normalize() : measurement;
+		data.stamp(nanoTime, sequence.getAndIncrement(), epochOffset);
+		for (final DataReceiver receiver : receivers)
+		{
+			receiver.onData(data);
+		}
+	}
+	
+	/**
+	 * Adds a receiver that is called synchronously by the plugin thread, so it should return quickly.
+	 */
+	public final void addReceiver(final DataReceiver receiver)
+	{
+		if (receiver == null) { throw new NullPointerException(); }
+		
 		synchronized (receiversSync)
 		{
-			for (final DataReceiver receiver : receivers)
+			if (indexOf(receiver) == -1)
 			{
-				receiver.onData(measurement);
+				add(receiver);
 			}
 		}
 	}
 	
-	public final void addReceiver(final DataReceiver receiver)
+	/**
+	 * Adds a receiver that is called by a thread of its own. Measurements are buffered in a queue with the given
+	 * capacity; when it is full, the policy decides which measurements are discarded.
+	 * <p>
+	 * If the receiver was already added with a queue, that queue is returned and the capacity and policy are ignored.
+	 * 
+	 * @return the queue, e.g. for monitoring the number of dropped measurements
+	 * @throws IllegalArgumentException
+	 *             if the receiver was already added without a queue
+	 */
+	public final QueuedReceiver addReceiver(final DataReceiver receiver, final int capacity,
+			final OverflowPolicy policy)
 	{
 		if (receiver == null) { throw new NullPointerException(); }
 		
 		synchronized (receiversSync)
 		{
-			if (!receivers.contains(receiver))
+			final int index = indexOf(receiver);
+			if (index != -1)
 			{
-				receivers.add(receiver);
+				final DataReceiver existing = receivers[index];
+				if (!(existing instanceof QueuedReceiver)) { throw new IllegalArgumentException(
+						"The receiver was already added without a queue"); }
+				return (QueuedReceiver) existing;
 			}
+			final QueuedReceiver queued = new QueuedReceiver(receiver, capacity, policy, threadFactory);
+			queued.start();
+			add(queued);
+			return queued;
 		}
 	}
 	
@@ -79,7 +270,54 @@ public abstract class DataSource
 		
 		synchronized (receiversSync)
 		{
-			receivers.remove(receiver);
+			final int index = indexOf(receiver);
+			if (index == -1) { return; }
+			
+			final DataReceiver removed = receivers[index];
+			final DataReceiver[] updated = new DataReceiver[receivers.length - 1];
+			System.arraycopy(receivers, 0, updated, 0, index);
+			System.arraycopy(receivers, index + 1, updated, index, updated.length - index);
+			receivers = updated;
+			
+			if (removed instanceof QueuedReceiver)
+			{
+				((QueuedReceiver) removed).stop();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the total number of measurements that queued receivers have discarded.
+	 */
+	public final long getDroppedCount()
+	{
+		long dropped = 0;
+		for (final DataReceiver receiver : receivers)
+		{
+			if (receiver instanceof QueuedReceiver)
+			{
+				dropped += ((QueuedReceiver) receiver).getDroppedCount();
+			}
+		}
+		return dropped;
+	}
+	
+	private void add(final DataReceiver receiver)
+	{
+		final DataReceiver[] updated = Arrays.copyOf(receivers, receivers.length + 1);
+		updated[receivers.length] = receiver;
+		receivers = updated;
+	}
+	
+	// Also finds queued receivers by the receiver they wrap
+	private int indexOf(final DataReceiver receiver)
+	{
+		for (int i = 0; i < receivers.length; i++)
+		{
+			final DataReceiver existing = receivers[i];
+			if (existing == receiver
+					|| (existing instanceof QueuedReceiver && ((QueuedReceiver) existing).getReceiver() == receiver)) { return i; }
 		}
+		return -1;
 	}
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api;
+
+import java.util.ServiceLoader;
+
+/**
+ * Describes a {@link DataSource} plugin and creates its instances. Providers are discovered with a
+ * {@link ServiceLoader}, so a plugin is registered by listing its provider in
+ * <code>META-INF/services/com.mtreader.api.DataSourceProvider</code>.
+ * <p>
+ * The metadata must be available without loading the plugin class, so that only the plugins of devices that are
+ * actually connected are loaded.
+ * 
+ * @author Felix Kirchmann
+ */
+public abstract class DataSourceProvider
+{
+	/**
+	 * @see DataSource#getSupportedDevices()
+	 */
+	public abstract String[] getSupportedDevices();
+	
+	/**
+	 * @see DataSource#getPortParameters()
+	 */
+	public abstract PortParameters getPortParameters();
+	
+	/**
+	 * @return a new instance of the plugin, which is used for one connection
+	 */
+	public abstract DataSource newDataSource();
+}
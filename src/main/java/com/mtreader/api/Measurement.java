@@ -6,39 +6,176 @@
 package com.mtreader.api;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 
 import com.mtreader.SI;
 
 /**
+ * A measured value, stored as a fixed-point number: the value is <code>mantissa * 10^-scale</code>, e.g. a mantissa
+ * of 1234 with a scale of 3 is 1.234. The unit and prefix are stored as their ordinals. The {@link BigDecimal} view
+ * is only created when it is requested.
+ * <p>
+ * Measurements passed to receivers by a {@link DataSource} are stamped with the {@link System#nanoTime()} at which
+ * the frame containing them was received, and with a sequence number that counts the measurements of the source. Gaps
+ * in the sequence numbers seen by a receiver mean that measurements were dropped on the way, e.g. by a
+ * {@link QueuedReceiver}.
  * 
  * @author Felix Kirchmann
  */
 public class Measurement
 {
-	private final BigDecimal	data;
-	private final String		unit;
-	private final SI.Prefix		prefix;
+	private static final SI.Prefix[]	prefixes	= SI.Prefix.values();
+	private static final double[]		powersOfTen	= { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	// Every unscaled value with this many digits fits into a long
+	private static final MathContext	longPrecision	= new MathContext(18, RoundingMode.HALF_EVEN);
 	
+	private final long					mantissa;
+	private final int					scale;
+	private final byte					unit, prefix;
+	
+	private BigDecimal					data;
+	
+	// Set by DataSource before the measurement is passed to the receivers
+	private long						nanoTime, epochOffset;
+	private long						sequence	= -1;
+	
+	/**
+	 * Values whose unscaled value does not fit into a long, which takes at least 19 significant digits, are rounded to
+	 * 18 significant digits. No meter displays that many, so this only affects values that were computed.
+	 */
 	public Measurement(final BigDecimal data, final String unit, final SI.Prefix prefix)
 	{
-		if (data == null || unit == null || prefix == null) { throw new NullPointerException(); }
+		this(fitToLong(data), SI.Unit.of(unit), prefix);
+	}
+	
+	// The value is only rounded once, and its unscaled value only created once
+	private Measurement(final BigDecimal data, final SI.Unit unit, final SI.Prefix prefix)
+	{
+		this(data.unscaledValue().longValue(), data.scale(), unit, prefix);
 		this.data = data;
-		this.unit = unit;
-		this.prefix = prefix;
+	}
+	
+	private static BigDecimal fitToLong(final BigDecimal data)
+	{
+		// The precision is cached, while the unscaled value is created on every call
+		if (data.precision() <= longPrecision.getPrecision()) { return data; }
+		return data.unscaledValue().bitLength() < 64 ? data : data.round(longPrecision);
+	}
+	
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the unit is not registered, see {@link SI.Unit#lookup(String)}
+	 */
+	public Measurement(final long mantissa, final int scale, final SI.Unit unit, final SI.Prefix prefix)
+	{
+		if (unit == null || prefix == null) { throw new NullPointerException(); }
+		if (unit.ordinal < 0) { throw new IllegalArgumentException("Unit " + unit + " is not registered"); }
+		this.mantissa = mantissa;
+		this.scale = scale;
+		this.unit = (byte) unit.ordinal;
+		this.prefix = (byte) prefix.ordinal();
 	}
 	
 	public BigDecimal getData()
 	{
+		BigDecimal data = this.data;
+		if (data == null)
+		{
+			data = BigDecimal.valueOf(mantissa, scale);
+			this.data = data;
+		}
 		return data;
 	}
 	
+	public double getDouble()
+	{
+		// Dividing by an exact power of ten is correctly rounded as long as the mantissa is exact as well
+		if (scale >= 0 && scale < powersOfTen.length && Math.abs(mantissa) < (1L << 53))
+		{
+			return mantissa / powersOfTen[scale];
+		}
+		return getData().doubleValue();
+	}
+	
+	/**
+	 * Converts this measurement to the given prefix. This only changes the scale, so it is exact and cheap.
+	 */
+	public Measurement convert(final SI.Prefix to)
+	{
+		final SI.Prefix from = getPrefix();
+		if (from == to) { return this; }
+		final Measurement converted = new Measurement(mantissa, SI.convertScale(scale, from, to), getUnitType(), to);
+		converted.stamp(nanoTime, sequence, epochOffset);
+		return converted;
+	}
+	
+	/**
+	 * Converts this measurement to the base unit of its dimension, i.e. removes its SI prefix.
+	 */
+	public Measurement normalize()
+	{
+		return convert(SI.Prefix.none);
+	}
+	
+	void stamp(final long nanoTime, final long sequence, final long epochOffset)
+	{
+		this.nanoTime = nanoTime;
+		this.sequence = sequence;
+		this.epochOffset = epochOffset;
+	}
+	
+	/**
+	 * @return the {@link System#nanoTime()} at which this measurement was received, or 0 if it wasn't passed through
+	 *         a {@link DataSource}
+	 */
+	public long getNanoTime()
+	{
+		return nanoTime;
+	}
+	
+	/**
+	 * @return the wall clock time at which this measurement was received, in nanoseconds since the epoch. Unlike
+	 *         {@link System#currentTimeMillis()}, this is derived from {@link #getNanoTime()} and a wall clock anchor
+	 *         taken when the source was started, so it is monotonic for all measurements of a source.
+	 */
+	public long getEpochNanos()
+	{
+		return nanoTime + epochOffset;
+	}
+	
+	/**
+	 * @return the number of measurements the source passed on before this one, or -1 if it wasn't passed through a
+	 *         {@link DataSource}
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+	
+	public long getMantissa()
+	{
+		return mantissa;
+	}
+	
+	public int getScale()
+	{
+		return scale;
+	}
+	
 	public String getUnit()
 	{
-		return unit;
+		return getUnitType().symbol;
+	}
+	
+	public SI.Unit getUnitType()
+	{
+		return SI.Unit.valueOf(unit & 0xFF);
 	}
 	
 	public SI.Prefix getPrefix()
 	{
-		return prefix;
+		return prefixes[prefix];
 	}
-}
\ No newline at end of file
+}
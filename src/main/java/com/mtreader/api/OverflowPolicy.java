@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api;
+
+/**
+ * Determines what a {@link QueuedReceiver} does when a measurement arrives while its queue is full.
+ * 
+ * @author Felix Kirchmann
+ */
+public enum OverflowPolicy
+{
+	/** Discard the oldest queued measurement to make room for the new one. */
+	dropOldest,
+	
+	/** Wait until the receiver has made room. This stalls the plugin, use with care. */
+	block,
+	
+	/** Only keep the latest measurement; a measurement that has not been delivered yet is replaced. */
+	coalesce
+}
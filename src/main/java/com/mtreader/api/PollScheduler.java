@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues the poll commands of all polled devices from a single thread. Pollers are organized in groups: all pollers
+ * of a group with the same interval are polled in the same tick, one after another, so e.g. a voltage and a current
+ * meter that are logged together are read at (almost) the same time.
+ * <p>
+ * The pollers are run on the scheduler thread itself, rather than being handed to the threads of their connections,
+ * as that would add the wakeup latency of another thread to every poll and spread the polls of a group apart. The
+ * trade-off is that a poller that blocks delays all other polls. A poll command is a few bytes that the serial driver
+ * buffers, so this only happens if a driver hangs; the jitter statistics then show it. A poller that throws an
+ * {@link IOException}, e.g. because its device was unplugged, is cancelled.
+ * <p>
+ * For each group, the scheduler measures the jitter, i.e. how late each tick actually fired compared to its ideal
+ * time.
+ * 
+ * @author Felix Kirchmann
+ */
+public final class PollScheduler
+{
+	public interface Poller
+	{
+		/**
+		 * Sends the poll command. Runs on the scheduler thread, so it must not block.
+		 *
+		 * @throws IOException
+		 *             if the device can't be polled; the poller is then cancelled
+		 */
+		public void poll() throws IOException;
+	}
+	
+	/**
+	 * The jitter of a group's ticks, in microseconds.
+	 */
+	public static final class Statistics
+	{
+		public final long	ticks, meanJitter, maxJitter;
+		
+		Statistics(final long ticks, final long meanJitter, final long maxJitter)
+		{
+			this.ticks = ticks;
+			this.meanJitter = meanJitter;
+			this.maxJitter = maxJitter;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return ticks + " ticks, jitter mean " + meanJitter + " \u03bcs, max " + maxJitter + " \u03bcs";
+		}
+	}
+	
+	public static final String			defaultGroup	= "default";
+	
+	private static final PollScheduler	instance		= new PollScheduler();
+	
+	public static PollScheduler getDefault()
+	{
+		return instance;
+	}
+	
+	private final ScheduledExecutorService	executor;
+	private final Map<String, Group>		groups		= new HashMap<>();
+	private final Object					groupsSync	= new Object();
+	
+	private PollScheduler()
+	{
+		final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(final Runnable task)
+			{
+				final Thread thread = new Thread(task);
+				thread.setName("Poll scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		this.executor = executor;
+	}
+	
+	/**
+	 * Polls the given poller in the given interval, in the same ticks as all other pollers of the group with the same
+	 * interval.
+	 */
+	public Registration register(final String group, final long intervalMillis, final Poller poller)
+	{
+		if (group == null || poller == null) { throw new NullPointerException(); }
+		if (intervalMillis <= 0) { throw new IllegalArgumentException("The interval must be positive"); }
+		
+		final Registration registration = new Registration(intervalMillis, poller);
+		registration.setGroup(group);
+		return registration;
+	}
+	
+	/**
+	 * Returns the jitter statistics of all active groups.
+	 */
+	public Map<String, Statistics> getStatistics()
+	{
+		final Map<String, Statistics> statistics = new HashMap<>();
+		synchronized (groupsSync)
+		{
+			for (final Map.Entry<String, Group> group : groups.entrySet())
+			{
+				statistics.put(group.getKey(), group.getValue().getStatistics());
+			}
+		}
+		return statistics;
+	}
+	
+	private static String key(final String group, final long intervalMillis)
+	{
+		return group + " @" + intervalMillis + " ms";
+	}
+	
+	public final class Registration
+	{
+		private final long		interval;
+		private final Poller	poller;
+		private Group			group;
+		private boolean			cancelled	= false;
+		
+		private Registration(final long interval, final Poller poller)
+		{
+			this.interval = interval;
+			this.poller = poller;
+		}
+		
+		/**
+		 * Moves this poller to another group. Does nothing if it was cancelled.
+		 */
+		public void setGroup(final String name)
+		{
+			if (name == null) { throw new NullPointerException(); }
+			
+			synchronized (groupsSync)
+			{
+				if (cancelled) { return; }
+				leaveGroup();
+				final String key = key(name, interval);
+				Group group = groups.get(key);
+				if (group == null)
+				{
+					group = new Group(key, interval);
+					group.start();
+					groups.put(key, group);
+				}
+				group.add(this);
+				this.group = group;
+			}
+		}
+		
+		/**
+		 * Returns the jitter statistics of the group this poller is in, or <code>null</code> if it was cancelled.
+		 */
+		public Statistics getStatistics()
+		{
+			synchronized (groupsSync)
+			{
+				return group == null ? null : group.getStatistics();
+			}
+		}
+		
+		/**
+		 * Stops polling. A cancelled poller can't be resumed.
+		 */
+		public void cancel()
+		{
+			synchronized (groupsSync)
+			{
+				cancelled = true;
+				leaveGroup();
+			}
+		}
+		
+		public boolean isCancelled()
+		{
+			synchronized (groupsSync)
+			{
+				return cancelled;
+			}
+		}
+		
+		private void leaveGroup()
+		{
+			synchronized (groupsSync)
+			{
+				if (group != null)
+				{
+					group.remove(this);
+					group = null;
+				}
+			}
+		}
+	}
+	
+	private final class Group implements Runnable
+	{
+		private final String				key;
+		private final long					interval;				// ns
+		private final long					start;
+		// Set by start(), while holding groupsSync
+		private ScheduledFuture<?>			future;
+		
+		// Copy-on-write, modified while holding groupsSync
+		private volatile Registration[]		members	= new Registration[0];
+		
+		// Only modified by the scheduler thread
+		private volatile long				ticks	= 0, totalJitter = 0, maxJitter = 0;
+		
+		Group(final String key, final long intervalMillis)
+		{
+			this.key = key;
+			this.interval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+			this.start = System.nanoTime() + interval;
+		}
+		
+		void start()
+		{
+			future = executor.scheduleAtFixedRate(this, start - System.nanoTime(), interval, TimeUnit.NANOSECONDS);
+		}
+		
+		void add(final Registration registration)
+		{
+			final Registration[] updated = Arrays.copyOf(members, members.length + 1);
+			updated[members.length] = registration;
+			members = updated;
+		}
+		
+		void remove(final Registration registration)
+		{
+			final Registration[] members = this.members;
+			for (int i = 0; i < members.length; i++)
+			{
+				if (members[i] == registration)
+				{
+					final Registration[] updated = new Registration[members.length - 1];
+					System.arraycopy(members, 0, updated, 0, i);
+					System.arraycopy(members, i + 1, updated, i, updated.length - i);
+					this.members = updated;
+					break;
+				}
+			}
+			if (this.members.length == 0)
+			{
+				future.cancel(false);
+				groups.remove(key);
+			}
+		}
+		
+		@Override
+		public void run()
+		{
+			final long jitter = Math.max(System.nanoTime() - (start + ticks * interval), 0);
+			ticks++;
+			totalJitter += jitter;
+			if (jitter > maxJitter)
+			{
+				maxJitter = jitter;
+			}
+			
+			for (final Registration registration : members)
+			{
+				try
+				{
+					registration.poller.poll();
+				}
+				catch (final IOException e)
+				{
+					// Reported once instead of in every tick, as the device is most likely gone
+					System.err.println("Poll failed, stopped polling: " + e);
+					registration.cancel();
+				}
+				catch (final RuntimeException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		Statistics getStatistics()
+		{
+			final long ticks = this.ticks;
+			return new Statistics(ticks, ticks == 0 ? 0 : totalJitter / ticks / 1000, maxJitter / 1000);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples a {@link DataReceiver} from the plugin that produces the measurements: measurements are put into a
+ * bounded queue and delivered to the receiver by a thread of its own, so a slow receiver cannot stall the plugin (see
+ * {@link OverflowPolicy}).
+ * 
+ * @see DataSource#addReceiver(DataReceiver, int, OverflowPolicy)
+ * @author Felix Kirchmann
+ */
+public final class QueuedReceiver implements DataReceiver
+{
+	private final DataReceiver					receiver;
+	private final OverflowPolicy				policy;
+	private final BlockingQueue<Measurement>	queue;
+	private final AtomicLong					dropped	= new AtomicLong();
+	private final Thread						thread;
+	private volatile boolean					run		= true;
+	
+	QueuedReceiver(final DataReceiver receiver, final int capacity, final OverflowPolicy policy,
+			final ThreadFactory threadFactory)
+	{
+		if (receiver == null || policy == null) { throw new NullPointerException(); }
+		if (capacity < 1) { throw new IllegalArgumentException("The capacity must be at least 1"); }
+		this.receiver = receiver;
+		this.policy = policy;
+		this.queue = new ArrayBlockingQueue<>(policy == OverflowPolicy.coalesce ? 1 : capacity);
+		
+		thread = threadFactory.newThread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				deliver();
+			}
+		});
+		thread.setName("[Receiver] " + receiver);
+	}
+	
+	/**
+	 * Starts the delivery thread. Not done by the constructor, so the thread never sees a partly constructed queue.
+	 */
+	void start()
+	{
+		thread.start();
+	}
+	
+	@Override
+	public void onData(final Measurement data)
+	{
+		if (!run) { return; }
+		
+		if (policy == OverflowPolicy.block)
+		{
+			try
+			{
+				queue.put(data);
+			}
+			catch (final InterruptedException e)
+			{
+				dropped.incrementAndGet();
+				Thread.currentThread().interrupt();
+			}
+		}
+		else
+		{
+			while (!queue.offer(data))
+			{
+				if (queue.poll() != null)
+				{
+					dropped.incrementAndGet();
+				}
+			}
+		}
+	}
+	
+	private void deliver()
+	{
+		while (run)
+		{
+			final Measurement data;
+			try
+			{
+				data = queue.take();
+			}
+			catch (final InterruptedException e)
+			{
+				continue;
+			}
+			try
+			{
+				receiver.onData(data);
+			}
+			catch (final RuntimeException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	public DataReceiver getReceiver()
+	{
+		return receiver;
+	}
+	
+	public OverflowPolicy getPolicy()
+	{
+		return policy;
+	}
+	
+	/**
+	 * Returns the number of measurements that were discarded because the queue was full.
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+	
+	/**
+	 * Stops the delivery thread. Measurements that are still queued are discarded.
+	 */
+	void stop()
+	{
+		run = false;
+		thread.interrupt();
+		queue.clear();
+	}
+}
@@ -7,13 +7,12 @@ package com.mtreader.api.impl;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
 
-import com.mtreader.SI;
 import com.mtreader.api.DataDevice;
 import com.mtreader.api.DataSource;
 import com.mtreader.api.Measurement;
+import com.mtreader.api.PollScheduler;
 import com.mtreader.api.PortParameters;
 
 /**
@@ -22,138 +21,85 @@ import com.mtreader.api.PortParameters;
  */
 public class VoltcraftME32 extends DataSource
 {
-	private static final PortParameters	portParameters	= new PortParameters(PortParameters.BAUDRATE_600,
-																PortParameters.DATABITS_7, PortParameters.STOPBITS_2,
-																PortParameters.PARITY_NONE, true, true);
-	
 	private static final int			pollInterval	= 300;												// ms
-	private static final Charset		packetCharset	= Charset.forName("UTF-8");
+	private static final byte[]			pollCommand		= new byte[] { 0x44 };								// ASCII 'D'
 	
 	@Override
 	public PortParameters getPortParameters()
 	{
-		return portParameters;
+		return VoltcraftME32Provider.portParameters;
 	}
 	
 	@Override
 	public String[] getSupportedDevices()
 	{
-		return new String[] { "Voltcraft ME-32" };
+		return VoltcraftME32Provider.supportedDevices.clone();
 	}
 	
-	private volatile boolean	run	= true;
+	private final VoltcraftME32Parser	parser	= new VoltcraftME32Parser();
+	private volatile boolean			run		= true;
+	// The time at which the packets being decoded were received
+	private long						readTime;
 	
 	@Override
 	protected void onStart(final DataDevice device)
 	{
 		try
 		{
-			// Start the poll thread
-			final Thread poll = new Thread(new Runnable()
+			// Start polling
+			schedulePoll(pollInterval, new PollScheduler.Poller()
 			{
 				@Override
-				public void run()
+				public void poll() throws IOException
 				{
-					while (run)
-					{
-						try
-						{
-							device.write(new byte[] { 0x44 }); // 0x44 == ASCII 'D'
-							Thread.sleep(pollInterval);
-						}
-						catch (InterruptedException | IOException e)
-						{
-							e.printStackTrace();
-						}
-					}
+					device.write(pollCommand);
 				}
 			});
-			poll.setName("Voltcraft ME-32 polling thread");
-			poll.setPriority(Thread.MIN_PRIORITY);
-			poll.setDaemon(true);
-			poll.start();
 			
 			// Start reading
-			final byte[] buffer = new byte[13];
+			final ByteBuffer buffer = ByteBuffer.allocate(64);
+			final byte[] packet = new byte[VoltcraftME32Parser.PACKET_LENGTH];
 			int pos = 0;
 			while (run)
 			{
-				final byte read = (byte) device.read();
-				if (read == -1) // End of file
+				buffer.clear();
+				if (device.read(buffer) == -1) { throw new EOFException(); }
+				readTime = System.nanoTime();
+				for (int i = 0; i < buffer.position(); i++)
 				{
-					throw new EOFException();
-				}
-				else if (read == 13) // Carriage return
-				{
-					if (pos == 13)
+					final byte read = buffer.get(i);
+					if (read == 13) // Carriage return
 					{
-						decodePacket(buffer);
+						if (pos == packet.length)
+						{
+							decodePacket(packet);
+						}
+						pos = 0;
+					}
+					else if (pos < packet.length)
+					{
+						packet[pos] = read;
+						pos++;
 					}
-					pos = 0;
-				}
-				else if (pos < buffer.length)
-				{
-					buffer[pos] = read;
-					pos++;
 				}
 			}
 		}
 		catch (final IOException e)
 		{
-			e.printStackTrace();
+			// Closing the connection interrupts the read
+			if (run)
+			{
+				e.printStackTrace();
+			}
 		}
 	}
 	
-	private void decodePacket(final byte[] packetBytes)
+	void decodePacket(final byte[] packet)
 	{
-		// Read the packet as a string
-		final String packet = new String(packetBytes, packetCharset);
-		
-		// Determine the displayed number
-		String numberString = packet.substring(3, 9);
-		numberString = numberString.replace(".L", "").replace("L", "").replace('O', '0').trim();
-		BigDecimal number = null;
-		try
-		{
-			number = new BigDecimal(numberString);
-		}
-		catch (final NumberFormatException e)
-		{
-			return;
-		}
-		
-		// SI Prefix
-		final String prefixString = packet.substring(9, 10);
-		SI.Prefix prefix = null;
-		if (prefixString.equals(" "))
-		{
-			prefix = SI.Prefix.none;
-		}
-		else
-		{
-			for (final SI.Prefix p : SI.Prefix.values())
-			{
-				if (p.symbol.equals(prefixString))
-				{
-					prefix = p;
-					break;
-				}
-			}
-		}
-		if (prefix == null) { return; }
-		
-		String unit = packet.substring(10, 13).trim();
-		if (unit.equalsIgnoreCase("ohm"))
-		{
-			unit = "\u03a9"; // Ohm, uppercase Greek Omega
-		}
-		else if (unit.equalsIgnoreCase("c"))
-		{
-			unit = "\u00B0C"; // Degrees Celsius
-		}
+		// Overload and blank displays are skipped, as they don't carry a value
+		if (parser.parse(packet, 0) != VoltcraftME32Parser.VALID) { return; }
 		
-		// Unit
-		this.updateData(new Measurement(number, unit, prefix));
+		this.updateData(new Measurement(parser.getMantissa(), parser.getScale(), parser.getUnit(), parser.getPrefix()), readTime);
 	}
 	
 	@Override
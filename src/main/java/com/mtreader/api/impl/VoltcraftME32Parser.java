@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import com.mtreader.SI;
+
+/**
+ * Parses Voltcraft ME-32 packets directly from the received bytes. A packet consists of 13 ASCII characters: the
+ * measurement mode (3 characters), the displayed number (6), the SI prefix (1) and the unit (3).
+ * <p>
+ * {@link #parse(byte[], int)} returns the state of the display; the parsed value can then be retrieved using the
+ * getters. Instances are reused for every packet and are not thread-safe.
+ * <p>
+ * Packets with a unit that the multimeter doesn't send are {@link #INVALID}, as they can only be line noise or a
+ * packet that was received in parts.
+ * 
+ * @author Felix Kirchmann
+ */
+public class VoltcraftME32Parser
+{
+	public static final int				PACKET_LENGTH	= 13;
+	
+	/** The display shows a number. */
+	public static final int				VALID			= 0;
+	/** The display shows "OL", i.e. the measured value is out of range. */
+	public static final int				OVERLOAD		= 1;
+	/** The display doesn't show a number, e.g. while switching modes. */
+	public static final int				BLANK			= 2;
+	/** The packet could not be parsed. */
+	public static final int				INVALID			= 3;
+	
+	private static final SI.Prefix[]	prefixes		= new SI.Prefix[256];
+	static
+	{
+		prefixes[' '] = SI.Prefix.none;
+		for (final SI.Prefix prefix : SI.Prefix.values())
+		{
+			if (prefix.symbol.length() == 1 && prefix.symbol.charAt(0) < prefixes.length)
+			{
+				prefixes[prefix.symbol.charAt(0)] = prefix;
+			}
+		}
+		// The multimeter sends ASCII, so micro is either a 'u' or the Latin-1 micro sign
+		prefixes['u'] = SI.Prefix.micro;
+		prefixes[0xB5] = SI.Prefix.micro;
+	}
+	
+	private long						mantissa;
+	private int							scale;
+	private SI.Prefix					prefix;
+	private SI.Unit						unit;
+	
+	public int parse(final byte[] packet, final int offset)
+	{
+		final int numberState = parseNumber(packet, offset + 3, offset + 9);
+		if (numberState != VALID) { return numberState; }
+		
+		prefix = prefixes[packet[offset + 9] & 0xFF];
+		if (prefix == null) { return INVALID; }
+		
+		unit = parseUnit(packet, offset + 10, offset + 13);
+		if (unit == null) { return INVALID; }
+		return VALID;
+	}
+	
+	private int parseNumber(final byte[] packet, final int start, final int end)
+	{
+		int pos = start;
+		for (int i = start; i < end; i++)
+		{
+			if (packet[i] == 'L') { return OVERLOAD; }
+		}
+		while (pos < end && packet[pos] == ' ')
+		{
+			pos++;
+		}
+		if (pos == end) { return BLANK; }
+		
+		boolean negative = false;
+		if (packet[pos] == '-' || packet[pos] == '+')
+		{
+			negative = packet[pos] == '-';
+			pos++;
+		}
+		
+		long mantissa = 0;
+		int scale = -1, digits = 0;
+		for (; pos < end && packet[pos] != ' '; pos++)
+		{
+			final byte chr = packet[pos];
+			if (chr == '.')
+			{
+				if (scale != -1) { return INVALID; }
+				scale = 0;
+				continue;
+			}
+			// The display uses the letter O for zero in some modes
+			final int digit = (chr == 'O') ? 0 : chr - '0';
+			if (digit < 0 || digit > 9) { return INVALID; }
+			mantissa = mantissa * 10 + digit;
+			digits++;
+			if (scale != -1)
+			{
+				scale++;
+			}
+		}
+		while (pos < end && packet[pos] == ' ')
+		{
+			pos++;
+		}
+		if (pos != end || digits == 0) { return INVALID; }
+		
+		this.mantissa = negative ? -mantissa : mantissa;
+		this.scale = Math.max(scale, 0);
+		return VALID;
+	}
+	
+	// Returns null for units that the multimeter doesn't send
+	private SI.Unit parseUnit(final byte[] packet, int start, int end)
+	{
+		while (start < end && packet[start] == ' ')
+		{
+			start++;
+		}
+		while (end > start && packet[end - 1] == ' ')
+		{
+			end--;
+		}
+		
+		int key = 0;
+		for (int i = start; i < end; i++)
+		{
+			key = (key << 8) | Character.toLowerCase(packet[i] & 0xFF);
+		}
+		
+		switch (key)
+		{
+			case 0:
+				return SI.Unit.none;
+			case 'v':
+				return SI.Unit.volt;
+			case 'a':
+				return SI.Unit.ampere;
+			case 'f':
+				return SI.Unit.farad;
+			case 'c':
+				return SI.Unit.celsius;
+			case ('h' << 8) | 'z':
+				return SI.Unit.hertz;
+			case ('o' << 16) | ('h' << 8) | 'm':
+				return SI.Unit.ohm;
+			default:
+				return null;
+		}
+	}
+	
+	public long getMantissa()
+	{
+		return mantissa;
+	}
+	
+	public int getScale()
+	{
+		return scale;
+	}
+	
+	public SI.Prefix getPrefix()
+	{
+		return prefix;
+	}
+	
+	public SI.Unit getUnit()
+	{
+		return unit;
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import com.mtreader.api.DataSource;
+import com.mtreader.api.DataSourceProvider;
+import com.mtreader.api.PortParameters;
+
+/**
+ * Registers {@link VoltcraftME32} as a plugin, see {@link DataSourceProvider}.
+ * 
+ * @author Felix Kirchmann
+ */
+public class VoltcraftME32Provider extends DataSourceProvider
+{
+	static final String[]			supportedDevices	= { "Voltcraft ME-32" };
+	static final PortParameters		portParameters		= new PortParameters(PortParameters.BAUDRATE_600,
+																PortParameters.DATABITS_7, PortParameters.STOPBITS_2,
+																PortParameters.PARITY_NONE, true, true);
+	
+	@Override
+	public String[] getSupportedDevices()
+	{
+		return supportedDevices.clone();
+	}
+	
+	@Override
+	public PortParameters getPortParameters()
+	{
+		return portParameters;
+	}
+	
+	@Override
+	public DataSource newDataSource()
+	{
+		// Cast from Object, so verifying this class doesn't load the plugin class to check that it is a DataSource
+		final Object plugin = new VoltcraftME32();
+		return (DataSource) plugin;
+	}
+}
@@ -5,9 +5,9 @@
 
 package com.mtreader.api.impl;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.ByteBuffer;
 
 import com.mtreader.SI;
 import com.mtreader.api.DataDevice;
@@ -23,258 +23,170 @@ import com.mtreader.api.PortParameters;
  */
 public class VoltcraftVC840 extends DataSource
 {
-	private static final PortParameters	portParameters	= new PortParameters(PortParameters.BAUDRATE_2400,
-																PortParameters.DATABITS_8, PortParameters.STOPBITS_1,
-																PortParameters.PARITY_NONE, true, true);
-	
 	@Override
 	public PortParameters getPortParameters()
 	{
-		return portParameters;
+		return VoltcraftVC840Provider.portParameters;
 	}
 	
 	@Override
 	public String[] getSupportedDevices()
 	{
-		return new String[] { "Voltcraft VC-840" };
+		return VoltcraftVC840Provider.supportedDevices.clone();
 	}
 	
 	private volatile boolean	run	= true;
+	// The time at which the frames being decoded were received
+	private long				readTime;
 	
 	@Override
 	protected void onStart(final DataDevice device)
 	{
-		try
+		final VoltcraftVC840Framer framer = new VoltcraftVC840Framer(new VoltcraftVC840Framer.FrameHandler()
 		{
-			int oldPos = -1, currentPos;
-			int read = 0;
-			final byte[] buffer = new byte[14];
-			while (run)
+			@Override
+			public void onFrames(final byte[] frames, final int count)
 			{
-				do
-				{
-					read = device.read();
-				}
-				while (read == 0xFFFFFFFF && run);
-				
-				currentPos = getPos(read);
-				if (oldPos == -1)
-				{
-					if (currentPos == 0)
-					{
-						oldPos = currentPos;
-						buffer[0] = (byte) (read & 0x0F);
-					}
-				}
-				else
+				for (int i = 0; i < count; i++)
 				{
-					if (oldPos + 1 == currentPos && currentPos >= 0 && currentPos <= 13)
-					{
-						oldPos = currentPos;
-						buffer[currentPos] = (byte) (read & 0x0F);
-						
-						if (currentPos == 13)
-						{
-							decode(buffer);
-							oldPos = -1;
-						}
-					}
-					else
-					{
-						oldPos = -1;
-					}
+					decode(frames, i * VoltcraftVC840Framer.FRAME_LENGTH);
 				}
 			}
+		});
+		try
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate(256);
+			while (run)
+			{
+				buffer.clear();
+				if (device.read(buffer) == -1) { throw new EOFException(); }
+				readTime = System.nanoTime();
+				buffer.flip();
+				framer.feed(buffer);
+			}
 		}
 		catch (final IOException e)
 		{
-			e.printStackTrace();
+			// Closing the connection interrupts the read
+			if (run)
+			{
+				e.printStackTrace();
+			}
 		}
 	}
 	
-	private byte getPos(final int fromByte)
-	{
-		return (byte) ((fromByte >> 4) - 1);
-	}
-	
-	private void decode(final byte[] read)
+	void decode(final byte[] read, final int offset)
 	{
 		// Ensure that only one SI prefix is set
-		if (!isPowerOfTwo((read[9] & 0b1110) | ((read[10] & 0b1010) << 3))) { return; }
+		if (!isPowerOfTwo((read[offset + 9] & 0b1110) | ((read[offset + 10] & 0b1010) << 3))) { return; }
 		
 		// Ensure that only one measurement unit is set
-		if (!isPowerOfTwo((read[11] & 0b1100) | ((read[12] & 0b1110) << 3))) { return; }
+		if (!isPowerOfTwo((read[offset + 11] & 0b1100) | ((read[offset + 12] & 0b1110) << 3))) { return; }
 		
 		// Decode displayed digits
-		final byte[] chars = new byte[4];
-		for (int i = 0; i < chars.length; i++)
+		long mantissa = 0;
+		for (int i = 0; i < 4; i++)
 		{
-			final byte chr = decodeChar(new byte[] { read[(i * 2) + 1], read[(i * 2) + 2] });
+			final byte chr = decodeChar(read[offset + (i * 2) + 1], read[offset + (i * 2) + 2]);
 			if (chr == -1) { return; }
-			chars[i] = chr;
+			mantissa = mantissa * 10 + chr;
 		}
 		
-		// Find the decimal point
-		int dotPosition = chars.length;
+		// Find the decimal point, which determines the number of displayed decimal places
+		int scale = 0;
 		for (int i = 1; i <= 3; i++)
 		{
-			if (getBitState(read[(i * 2) + 1], 3))
+			if (getBitState(read[offset + (i * 2) + 1], 3))
 			{
-				if (dotPosition == chars.length)
-				{
-					dotPosition = i;
-					break;
-				}
-				else
-				{
-					return;
-				}
+				scale = 4 - i;
+				break;
 			}
 		}
-		final boolean negative = getBitState(read[1], 3);
+		if (getBitState(read[offset + 1], 3))
+		{
+			mantissa = -mantissa;
+		}
 		
 		SI.Prefix prefix = SI.Prefix.none;
-		if (getBitState(read[9], 1))
+		if (getBitState(read[offset + 9], 1))
 		{
 			prefix = SI.Prefix.kilo;
 		}
-		else if (getBitState(read[9], 2))
+		else if (getBitState(read[offset + 9], 2))
 		{
 			prefix = SI.Prefix.nano;
 		}
-		else if (getBitState(read[9], 3))
+		else if (getBitState(read[offset + 9], 3))
 		{
 			prefix = SI.Prefix.micro;
 		}
-		else if (getBitState(read[10], 1))
+		else if (getBitState(read[offset + 10], 1))
 		{
 			prefix = SI.Prefix.mega;
 		}
-		else if (getBitState(read[10], 3))
+		else if (getBitState(read[offset + 10], 3))
 		{
 			prefix = SI.Prefix.milli;
 		}
 		
-		String unit = "";
-		if (getBitState(read[11], 2))
+		SI.Unit unit = SI.Unit.none;
+		if (getBitState(read[offset + 11], 2))
 		{
-			unit = "\u03a9"; // Ohm, uppercase Greek Omega
+			unit = SI.Unit.ohm;
 		}
-		else if (getBitState(read[11], 3))
+		else if (getBitState(read[offset + 11], 3))
 		{
-			unit = "F"; // Farad
+			unit = SI.Unit.farad;
 		}
-		else if (getBitState(read[12], 1))
+		else if (getBitState(read[offset + 12], 1))
 		{
-			unit = "Hz"; // Hertz
+			unit = SI.Unit.hertz;
 		}
-		else if (getBitState(read[12], 2))
+		else if (getBitState(read[offset + 12], 2))
 		{
-			unit = "V"; // Volt
+			unit = SI.Unit.volt;
 		}
-		else if (getBitState(read[12], 3))
+		else if (getBitState(read[offset + 12], 3))
 		{
-			unit = "A"; // Ampère
+			unit = SI.Unit.ampere;
 		}
-		else if (getBitState(read[13], 0)) // For some reason, this pin is undocumented
+		else if (getBitState(read[offset + 13], 0)) // For some reason, this pin is undocumented
 		{
-			unit = "\u00B0C"; // Degrees Celsius
-		}
-		
-		// Turn the read data into a BigDecimal...
-		final StringBuilder sb = new StringBuilder();
-		if (negative)
-		{
-			sb.append('-');
-		}
-		for (int i = 0; i < chars.length; i++)
-		{
-			if (i == dotPosition)
-			{
-				sb.append('.');
-			}
-			sb.append(chars[i]);
+			unit = SI.Unit.celsius;
 		}
-		final BigDecimal data = new BigDecimal(sb.toString());
-		data.setScale(chars.length - dotPosition, RoundingMode.HALF_UP);
 		
-		// ... and pass it to the application
-		
-		this.updateData(new Measurement(data, unit, prefix));
+		this.updateData(new Measurement(mantissa, scale, unit, prefix), readTime);
 	}
 	
-	private byte decodeChar(final byte[] read)
+	// @formatter:off
+	/**
+	 * The digit shown by each combination of the seven segments, or -1 if the combination is not a digit. The index is
+	 * built from the two nibbles of a digit as <code>(first &amp; 0b111) | (second &lt;&lt; 3)</code>, so bits 0 to 6
+	 * are the segments a, f, e, b, g, c and d (see the tech. documentation link above for the meaning of the letters).
+	 */
+	private static final byte[]	digits	= {
+		-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+		-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+		-1, -1, -1, -1, -1, -1, -1, -1,  1,  7,  1,  7,  1,  7,  1,  7,
+		-1, -1, -1, -1, -1, -1, -1, -1,  1, -1,  4, -1,  1, -1,  4, -1,
+		-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+		-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,  2, -1,  2,
+		-1, -1, -1, -1, -1, -1, -1, -1,  1,  7,  1,  7,  1,  7,  1,  0,
+		-1, -1, -1,  5, -1, -1, -1,  6,  1,  3,  4,  9,  1,  3,  4,  8
+	};
+	// @formatter:on
+	
+	static byte decodeChar(final byte first, final byte second)
 	{
-		// for the meaning of the letters, see tech. documentation link above
-		final boolean a = getBitState(read[0], 0);
-		final boolean b = getBitState(read[1], 0);
-		final boolean c = getBitState(read[1], 2);
-		final boolean d = getBitState(read[1], 3);
-		final boolean e = getBitState(read[0], 2);
-		final boolean f = getBitState(read[0], 1);
-		final boolean g = getBitState(read[1], 1);
-		
-		if (b && c)
-		{
-			if (a && d && e && f)
-			{
-				if (g)
-				{
-					return 8;
-				}
-				else
-				{
-					return 0;
-				}
-			}
-			else if (a)
-			{
-				if (g)
-				{
-					if (f && d)
-					{
-						return 9;
-					}
-					else if (d) { return 3; }
-				}
-				else
-				{
-					return 7;
-				}
-			}
-			else if (f && g)
-			{
-				return 4;
-			}
-			else
-			{
-				return 1;
-			}
-		}
-		else if (a && g && d)
-		{
-			if (f && c)
-			{
-				if (e)
-				{
-					return 6;
-				}
-				else
-				{
-					return 5;
-				}
-			}
-			else if (b && e) { return 2; }
-		}
-		return -1;
+		return digits[(first & 0b111) | ((second & 0b1111) << 3)];
 	}
 	
-	private boolean isPowerOfTwo(final int number)
+	private static boolean isPowerOfTwo(final int number)
 	{
 		return (number & (number - 1)) == 0;
 	}
 	
-	private boolean getBitState(final byte fromByte, final int pos)
+	private static boolean getBitState(final byte fromByte, final int pos)
 	{
 		return (fromByte & (1 << pos)) > 0;
 	}
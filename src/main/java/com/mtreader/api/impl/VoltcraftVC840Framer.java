@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Assembles VC-840 frames from arbitrarily sized chunks of the raw byte stream, e.g. the bytes returned by one bulk
+ * read or the contents of a capture file.
+ * <p>
+ * Every byte of a frame carries its position (1 to 14) in the high nibble and the payload in the low nibble. Complete
+ * frames are collected in a batch buffer, which only contains the payload nibbles, and handed to the
+ * {@link FrameHandler} once per chunk (or when the batch buffer is full). If a byte is out of sequence, the current
+ * frame is discarded; if that byte starts a new frame, assembly continues from it.
+ * <p>
+ * Instances are not thread-safe.
+ * 
+ * @author Felix Kirchmann
+ */
+public class VoltcraftVC840Framer
+{
+	public static final int	FRAME_LENGTH	= 14;
+	
+	public interface FrameHandler
+	{
+		/**
+		 * @param frames
+		 *            the payload nibbles of <code>count</code> frames, frame <code>i</code> starts at
+		 *            <code>i * FRAME_LENGTH</code>. Only valid until this method returns.
+		 */
+		public void onFrames(byte[] frames, int count);
+	}
+	
+	private final FrameHandler	handler;
+	private final byte[]		frames;
+	private final int			batchSize;
+	private int					count		= 0;
+	private int					position	= -1;	// position of the last byte of the current frame, -1 if none
+													
+	public VoltcraftVC840Framer(final FrameHandler handler)
+	{
+		this(handler, 64);
+	}
+	
+	public VoltcraftVC840Framer(final FrameHandler handler, final int batchSize)
+	{
+		if (handler == null) { throw new NullPointerException(); }
+		if (batchSize < 1) { throw new IllegalArgumentException("The batch size must be at least 1"); }
+		this.handler = handler;
+		this.batchSize = batchSize;
+		this.frames = new byte[batchSize * FRAME_LENGTH];
+	}
+	
+	public void feed(final ByteBuffer chunk)
+	{
+		if (chunk.hasArray())
+		{
+			feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+			chunk.position(chunk.limit());
+		}
+		else
+		{
+			while (chunk.hasRemaining())
+			{
+				accept(chunk.get());
+			}
+			flush();
+		}
+	}
+	
+	public void feed(final byte[] chunk, final int offset, final int length)
+	{
+		final int end = offset + length;
+		for (int i = offset; i < end; i++)
+		{
+			accept(chunk[i]);
+		}
+		flush();
+	}
+	
+	private void accept(final byte read)
+	{
+		final int currentPos = ((read & 0xFF) >> 4) - 1;
+		if (currentPos == position + 1 || currentPos == 0)
+		{
+			frames[count * FRAME_LENGTH + currentPos] = (byte) (read & 0x0F);
+			if (currentPos == FRAME_LENGTH - 1)
+			{
+				position = -1;
+				if (++count == batchSize)
+				{
+					flush();
+				}
+			}
+			else
+			{
+				position = currentPos;
+			}
+		}
+		else
+		{
+			position = -1;
+		}
+	}
+	
+	private void flush()
+	{
+		if (count == 0) { return; }
+		
+		handler.onFrames(frames, count);
+		
+		// Keep the partially assembled frame, if any
+		if (position >= 0)
+		{
+			System.arraycopy(frames, count * FRAME_LENGTH, frames, 0, position + 1);
+		}
+		count = 0;
+	}
+	
+	/**
+	 * Discards the partially assembled frame, if any.
+	 */
+	public void reset()
+	{
+		position = -1;
+	}
+}
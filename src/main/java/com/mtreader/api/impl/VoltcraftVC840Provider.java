@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2012-2023 Felix Kirchmann.
+ * Distributed under the MIT License (license terms are at http://opensource.org/licenses/MIT).
+ */
+
+package com.mtreader.api.impl;
+
+import com.mtreader.api.DataSource;
+import com.mtreader.api.DataSourceProvider;
+import com.mtreader.api.PortParameters;
+
+/**
+ * Registers {@link VoltcraftVC840} as a plugin, see {@link DataSourceProvider}.
+ * 
+ * @author Felix Kirchmann
+ */
+public class VoltcraftVC840Provider extends DataSourceProvider
+{
+	static final String[]			supportedDevices	= { "Voltcraft VC-840" };
+	static final PortParameters		portParameters		= new PortParameters(PortParameters.BAUDRATE_2400,
+																PortParameters.DATABITS_8, PortParameters.STOPBITS_1,
+																PortParameters.PARITY_NONE, true, true);
+	
+	@Override
+	public String[] getSupportedDevices()
+	{
+		return supportedDevices.clone();
+	}
+	
+	@Override
+	public PortParameters getPortParameters()
+	{
+		return portParameters;
+	}
+	
+	@Override
+	public DataSource newDataSource()
+	{
+		// Cast from Object, so verifying this class doesn't load the plugin class to check that it is a DataSource
+		final Object plugin = new VoltcraftVC840();
+		return (DataSource) plugin;
+	}
+}